@@ -0,0 +1,64 @@
+package com.equiperocket.projects.avltree.benchmarks;
+
+import com.equiperocket.projects.avltree.BinaryTree;
+import com.equiperocket.projects.avltree.TreeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Compares the engines of TreeFactory. The tree starts with every key of the
+// workload; churn toggles the next key (removes it if present, inserts it
+// otherwise), so a pass over the sequence is delete-heavy and the next one
+// insert-heavy, and find looks keys up in whatever the tree holds.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EngineBenchmark {
+
+    @Param({"avl", "wavl", "rb", "treap"})
+    public String engine;
+
+    private int[] keys;
+    private int next;
+    private BinaryTree<?> tree;
+
+    @Setup
+    public void setUp(Workload workload) {
+        keys = workload.keys;
+        next = 0;
+        tree = TreeFactory.create(engine);
+        for (int key : workload.sorted) tree.insertKey(key);
+    }
+
+    private int nextKey() {
+        if (next == keys.length) next = 0;
+        return keys[next++];
+    }
+
+    @Benchmark
+    public boolean churn(Rotations rotations) {
+        int key = nextKey();
+        boolean removed = tree.removeKey(key);
+        if (!removed) tree.insertKey(key);
+        rotations.record(tree.getLastRotationsCount());
+        return removed;
+    }
+
+    @Benchmark
+    public boolean find() {
+        return tree.contains(nextKey());
+    }
+}
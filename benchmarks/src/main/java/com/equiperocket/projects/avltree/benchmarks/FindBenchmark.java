@@ -0,0 +1,79 @@
+package com.equiperocket.projects.avltree.benchmarks;
+
+import com.equiperocket.projects.avltree.AVLTree;
+import com.equiperocket.projects.avltree.FrozenAVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+// One operation looks up the next key of the workload in a structure holding
+// all of them, so every lookup hits and Zipfian probes favour hot keys
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FindBenchmark {
+
+    private int[] keys;
+    private int next;
+
+    private AVLTree avlTree;
+    private FrozenAVLTree frozen;
+    private TreeMap<Integer, Integer> treeMap;
+    private TreeSet<Integer> treeSet;
+
+    @Setup
+    public void setUp(Workload workload) {
+        keys = workload.keys;
+        next = 0;
+        avlTree = new AVLTree();
+        avlTree.bulkLoad(workload.sorted);
+        frozen = avlTree.freeze();
+        treeMap = new TreeMap<>();
+        for (int key : workload.sorted) treeMap.put(key, key);
+        treeSet = new TreeSet<>(treeMap.navigableKeySet());
+    }
+
+    private int nextKey() {
+        if (next == keys.length) next = 0;
+        return keys[next++];
+    }
+
+    @Benchmark
+    public Object avlTreeFind() {
+        return avlTree.find(nextKey());
+    }
+
+    @Benchmark
+    public boolean avlTreeContains() {
+        return avlTree.contains(nextKey());
+    }
+
+    @Benchmark
+    public boolean frozenContains() {
+        return frozen.contains(nextKey());
+    }
+
+    @Benchmark
+    public Integer treeMap() {
+        return treeMap.get(nextKey());
+    }
+
+    @Benchmark
+    public boolean treeSet() {
+        return treeSet.contains(nextKey());
+    }
+}
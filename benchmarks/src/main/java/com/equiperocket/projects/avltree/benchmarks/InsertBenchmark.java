@@ -0,0 +1,73 @@
+package com.equiperocket.projects.avltree.benchmarks;
+
+import com.equiperocket.projects.avltree.AVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+// One operation inserts the next key of the workload. When the sequence runs
+// out the structure is replaced by an empty one and the sequence restarts, so
+// the measurement covers growing a tree from 0 to size keys.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class InsertBenchmark {
+
+    private int[] keys;
+    private int next;
+
+    private AVLTree avlTree;
+    private TreeMap<Integer, Integer> treeMap;
+    private TreeSet<Integer> treeSet;
+
+    @Setup
+    public void setUp(Workload workload) {
+        keys = workload.keys;
+        next = 0;
+        avlTree = new AVLTree();
+        treeMap = new TreeMap<>();
+        treeSet = new TreeSet<>();
+    }
+
+    private int nextKey() {
+        if (next == keys.length) {
+            next = 0;
+            avlTree = new AVLTree();
+            treeMap = new TreeMap<>();
+            treeSet = new TreeSet<>();
+        }
+        return keys[next++];
+    }
+
+    @Benchmark
+    public boolean avlTree(Rotations rotations) {
+        boolean added = avlTree.insertKey(nextKey());
+        rotations.record(avlTree.getLastRotationsCount());
+        return added;
+    }
+
+    @Benchmark
+    public Integer treeMap() {
+        int key = nextKey();
+        return treeMap.put(key, key);
+    }
+
+    @Benchmark
+    public boolean treeSet() {
+        return treeSet.add(nextKey());
+    }
+}
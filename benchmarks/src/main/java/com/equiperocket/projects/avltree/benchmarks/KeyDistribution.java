@@ -0,0 +1,61 @@
+package com.equiperocket.projects.avltree.benchmarks;
+
+import com.equiperocket.projects.avltree.ZipfianGenerator;
+
+import java.util.SplittableRandom;
+
+// Key sequences fed to the benchmarks. All of them are deterministic for a seed.
+public enum KeyDistribution {
+
+    // 0, 1, 2, ...: every insert goes to the rightmost path
+    SEQUENTIAL {
+        @Override
+        public int[] generate(int count, long seed) {
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) keys[i] = i;
+            return keys;
+        }
+    },
+
+    // Uniform over the whole int range
+    RANDOM {
+        @Override
+        public int[] generate(int count, long seed) {
+            return new SplittableRandom(seed).ints(count).toArray();
+        }
+    },
+
+    // Skewed towards a few hot keys (see ZipfianGenerator), so the sequence
+    // repeats keys. Ranks are scrambled so hot keys are spread over the tree.
+    ZIPFIAN {
+        @Override
+        public int[] generate(int count, long seed) {
+            SplittableRandom random = new SplittableRandom(seed);
+            ZipfianGenerator zipfian = new ZipfianGenerator(count);
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                // Odd multiplier: distinct ranks stay distinct
+                keys[i] = (int) zipfian.nextRank(random) * 0x9E3779B9;
+            }
+            return keys;
+        }
+    },
+
+    // Short ascending runs (teeth) that each sweep the whole key range, so
+    // inserts keep landing on different right spines
+    SAWTOOTH {
+        @Override
+        public int[] generate(int count, long seed) {
+            int teeth = (count + TOOTH - 1) / TOOTH;
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = (i % TOOTH) * teeth + i / TOOTH;
+            }
+            return keys;
+        }
+    };
+
+    private static final int TOOTH = 1024;
+
+    public abstract int[] generate(int count, long seed);
+}
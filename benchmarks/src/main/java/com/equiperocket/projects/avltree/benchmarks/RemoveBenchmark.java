@@ -0,0 +1,78 @@
+package com.equiperocket.projects.avltree.benchmarks;
+
+import com.equiperocket.projects.avltree.AVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+// One operation removes the next key of the workload from a full structure.
+// When the sequence runs out, only the structure of the running variant is
+// rebuilt from the sorted keys (the first call of a trial builds it too), a
+// linear step that adds a few nanoseconds per operation.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RemoveBenchmark {
+
+    private int[] keys;
+    private int[] sorted;
+    private TreeMap<Integer, Integer> template;
+    private int next;
+
+    private AVLTree avlTree;
+    private TreeMap<Integer, Integer> treeMap;
+    private TreeSet<Integer> treeSet;
+
+    @Setup
+    public void setUp(Workload workload) {
+        keys = workload.keys;
+        sorted = workload.sorted;
+        template = new TreeMap<>();
+        for (int key : sorted) template.put(key, key);
+        next = keys.length;
+    }
+
+    // True once per pass over the sequence, when the caller must rebuild
+    private boolean exhausted() {
+        if (next < keys.length) return false;
+        next = 0;
+        return true;
+    }
+
+    @Benchmark
+    public boolean avlTree(Rotations rotations) {
+        if (exhausted()) {
+            avlTree = new AVLTree();
+            avlTree.bulkLoad(sorted);
+        }
+        boolean removed = avlTree.removeKey(keys[next++]);
+        rotations.record(avlTree.getLastRotationsCount());
+        return removed;
+    }
+
+    @Benchmark
+    public Integer treeMap() {
+        if (exhausted()) treeMap = new TreeMap<>(template);
+        return treeMap.remove(keys[next++]);
+    }
+
+    @Benchmark
+    public boolean treeSet() {
+        if (exhausted()) treeSet = new TreeSet<>(template.navigableKeySet());
+        return treeSet.remove(keys[next++]);
+    }
+}
@@ -0,0 +1,27 @@
+package com.equiperocket.projects.avltree.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Reported next to the score: rotations / operations is the rotations per operation
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class Rotations {
+
+    public long rotations;
+    public long operations;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        rotations = 0;
+        operations = 0;
+    }
+
+    void record(int count) {
+        rotations += count;
+        operations++;
+    }
+}
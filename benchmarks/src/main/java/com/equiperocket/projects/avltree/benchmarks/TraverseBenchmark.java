@@ -0,0 +1,60 @@
+package com.equiperocket.projects.avltree.benchmarks;
+
+import com.equiperocket.projects.avltree.AVLTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+// One operation renders a whole traversal into a string. The TreeSet baseline
+// builds the same in-order string, so the scores compare like for like.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TraverseBenchmark {
+
+    private AVLTree avlTree;
+    private TreeSet<Integer> treeSet;
+
+    @Setup
+    public void setUp(Workload workload) {
+        avlTree = new AVLTree();
+        avlTree.bulkLoad(workload.sorted);
+        treeSet = new TreeSet<>();
+        for (int key : workload.sorted) treeSet.add(key);
+    }
+
+    @Benchmark
+    public String inOrder() {
+        return avlTree.traverseInOrder();
+    }
+
+    @Benchmark
+    public String preOrder() {
+        return avlTree.traversePreOrder();
+    }
+
+    @Benchmark
+    public String postOrder() {
+        return avlTree.traversePostOrder();
+    }
+
+    @Benchmark
+    public String treeSetInOrder() {
+        StringBuilder sb = new StringBuilder();
+        for (int key : treeSet) sb.append(key).append(' ');
+        return sb.toString();
+    }
+}
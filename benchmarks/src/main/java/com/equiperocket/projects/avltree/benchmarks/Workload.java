@@ -0,0 +1,33 @@
+package com.equiperocket.projects.avltree.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+
+// Key sequence shared by every benchmark of one (size, distribution) pair
+@State(Scope.Benchmark)
+public class Workload {
+
+    private static final long SEED = 42;
+
+    @Param({"1000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN", "SAWTOOTH"})
+    public KeyDistribution distribution;
+
+    // Keys in generation order; Zipfian sequences contain repeats
+    public int[] keys;
+
+    // The distinct keys in ascending order, used to prefill trees
+    public int[] sorted;
+
+    @Setup
+    public void generate() {
+        keys = distribution.generate(size, SEED);
+        sorted = Arrays.stream(keys).sorted().distinct().toArray();
+    }
+}
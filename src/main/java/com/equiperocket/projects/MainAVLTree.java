@@ -1,21 +1,90 @@
 package com.equiperocket.projects;
 
-import com.equiperocket.projects.avltree.AVLTree;
+import com.equiperocket.projects.avltree.AVLTreeLoader;
+import com.equiperocket.projects.avltree.BatchRunner;
+import com.equiperocket.projects.avltree.BinaryTree;
 import com.equiperocket.projects.avltree.Tree;
+import com.equiperocket.projects.avltree.TreeFactory;
 
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.util.Scanner;
 
 public class MainAVLTree {
 
     private static final Scanner sc = new Scanner(System.in);
 
-    public static void main(String[] args) {
-        processMenuOperations();
+    // Usage: MainAVLTree [--engine avl|wavl|rb|treap] [--load file] [--batch [file]]
+    // --load starts from the keys of a binary int32 or text file, see
+    // AVLTreeLoader (avl engine only). --batch runs the commands of the file (or
+    // stdin) instead of the menu, see BatchRunner; results go to stdout and the
+    // summaries to stderr.
+    public static void main(String[] args) throws IOException {
+        String engine = TreeFactory.DEFAULT_ENGINE;
+        String loadFile = null;
+        boolean batch = false;
+        String batchFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--engine") && i + 1 < args.length) {
+                engine = args[++i];
+            } else if (args[i].equals("--load") && i + 1 < args.length) {
+                loadFile = args[++i];
+            } else if (args[i].equals("--batch")) {
+                batch = true;
+                if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                    batchFile = args[++i];
+                }
+            }
+        }
+
+        BinaryTree<?> tree = TreeFactory.create(engine);
+        if (loadFile != null) {
+            if (!engine.equalsIgnoreCase("avl")) {
+                System.err.println("--load builds an AVLTree, use --engine avl");
+                System.exit(1);
+            }
+            tree = processLoad(loadFile);
+        }
+        if (batch) {
+            processBatch(tree, batchFile);
+        } else {
+            processMenuOperations(engine, tree);
+        }
+    }
+
+    private static BinaryTree<?> processLoad(String file) throws IOException {
+        try {
+            AVLTreeLoader.Result result = AVLTreeLoader.load(Path.of(file));
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            System.err.println(result);
+            System.err.printf("Heap used: %d MB%n", (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+            return result.tree();
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return null;
+        }
     }
 
-    private static void processMenuOperations() {
-        AVLTree tree = new AVLTree();
+    private static void processBatch(BinaryTree<?> tree, String file) throws IOException {
+        try (FileChannel in = file != null
+                ? FileChannel.open(Path.of(file))
+                : new FileInputStream(FileDescriptor.in).getChannel();
+             FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel()) {
+            BatchRunner.Summary summary = new BatchRunner(tree).run(in, out);
+            System.err.println(summary);
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
 
+    private static void processMenuOperations(String engine, BinaryTree<?> tree) {
         do {
             System.out.println("1. Insert");
             System.out.println("2. Find");
@@ -43,7 +112,7 @@ public class MainAVLTree {
                     processPrintMenu(tree);
                     break;
                 case 5:
-                    tree = new AVLTree();
+                    tree = TreeFactory.create(engine);
                     break;
                 case 6:
                     sc.close();
@@ -98,11 +167,12 @@ public class MainAVLTree {
     }
 
     private static int readInteger() {
-        try {
-            return Integer.parseInt(sc.nextLine());
-        } catch (NumberFormatException e) {
-            System.out.print("Invalid input! Please enter an integer: ");
-            return readInteger();
+        while (true) {
+            try {
+                return Integer.parseInt(sc.nextLine());
+            } catch (NumberFormatException e) {
+                System.out.print("Invalid input! Please enter an integer: ");
+            }
         }
     }
 }
\ No newline at end of file
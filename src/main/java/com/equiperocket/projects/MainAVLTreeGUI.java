@@ -1,11 +1,13 @@
 package com.equiperocket.projects;
 
-import com.equiperocket.projects.avltree.AVLTree;
 import com.equiperocket.projects.avltree.AVLTreeVisualizerGUI;
+import com.equiperocket.projects.avltree.BinaryTree;
+import com.equiperocket.projects.avltree.TreeFactory;
 
 public class MainAVLTreeGUI {
+    // Usage: MainAVLTreeGUI [avl|wavl|rb|treap]
     public static void main(String[] args) {
-        AVLTree tree = new AVLTree();
+        BinaryTree<?> tree = TreeFactory.create(args.length > 0 ? args[0] : TreeFactory.DEFAULT_ENGINE);
         new AVLTreeVisualizerGUI(tree);
     }
 }
@@ -0,0 +1,949 @@
+package com.equiperocket.projects.avltree;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A {@link NavigableMap} backed by an AVL tree, ordered by a {@link Comparator}
+ * or by the natural ordering of its keys. It uses the same rotation and rebalance
+ * logic as {@link AVLTree}, but stores a value next to every key, so it can be
+ * used as a drop-in replacement for {@link java.util.TreeMap}.
+ *
+ * @param <K> The type of keys maintained by this map
+ * @param <V> The type of mapped values
+ */
+public class AVLMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    private static final int MAX_PATH = 64;
+
+    private final Comparator<? super K> comparator;
+    private Node<K, V> root;
+    private int size;
+    private int modCount;
+    private int rotationsCount;
+    private final Node<K, V>[] path;
+
+    private transient NavigableMap<K, V> descendingMap;
+    private transient AVLSet<K> navigableKeySet;
+    private transient Set<Map.Entry<K, V>> entrySet;
+
+    public AVLMap() {
+        this((Comparator<? super K>) null);
+    }
+
+    public AVLMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+        root = null;
+        size = 0;
+        modCount = 0;
+        rotationsCount = 0;
+        path = newPath();
+    }
+
+    public AVLMap(Map<? extends K, ? extends V> map) {
+        this();
+        putAll(map);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] newPath() {
+        return (Node<K, V>[]) new Node<?, ?>[MAX_PATH];
+    }
+
+    @SuppressWarnings("unchecked")
+    final int compare(Object a, Object b) {
+        return comparator == null
+                ? ((Comparable<? super K>) a).compareTo((K) b)
+                : comparator.compare((K) a, (K) b);
+    }
+
+    public int getLastRotationsCount() {
+        return rotationsCount;
+    }
+
+    // ---- AVL core (same shape as AVLTree) ----
+
+    // Left element of root now becomes root
+    private Node<K, V> rotateRight(Node<K, V> node) {
+        Node<K, V> left = node.left;
+        node.left = left.right;
+        left.right = node;
+
+        Node.updateHeight(node);
+        Node.updateHeight(left);
+
+        rotationsCount++;
+        return left;
+    }
+
+    // Right element of root now becomes root
+    private Node<K, V> rotateLeft(Node<K, V> node) {
+        Node<K, V> right = node.right;
+        node.right = right.left;
+        right.left = node;
+
+        Node.updateHeight(node);
+        Node.updateHeight(right);
+
+        rotationsCount++;
+        return right;
+    }
+
+    private Node<K, V> rebalance(Node<K, V> node) {
+        Node.updateHeight(node);
+        int balance = Node.balanceFactor(node);
+        if (balance > 1) {
+            if (Node.balanceFactor(node.right) < 0) {
+                node.right = rotateRight(node.right);
+            }
+            node = rotateLeft(node);
+        } else if (balance < -1) {
+            if (Node.balanceFactor(node.left) > 0) {
+                node.left = rotateLeft(node.left);
+            }
+            node = rotateRight(node);
+        }
+        return node;
+    }
+
+    private void rebalancePath(int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            Node<K, V> node = path[i];
+            Node<K, V> balanced = rebalance(node);
+            if (balanced != node) {
+                replaceChild(i - 1, node, balanced);
+            }
+            path[i] = null;
+        }
+    }
+
+    private void replaceChild(int parentIndex, Node<K, V> oldChild, Node<K, V> newChild) {
+        if (parentIndex < 0) {
+            root = newChild;
+        } else if (path[parentIndex].left == oldChild) {
+            path[parentIndex].left = newChild;
+        } else {
+            path[parentIndex].right = newChild;
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (comparator == null) Objects.requireNonNull(key);
+        rotationsCount = 0;
+        int depth = 0;
+        int cmp = 0;
+        Node<K, V> node = root;
+        while (node != null) {
+            cmp = compare(key, node.key);
+            if (cmp == 0) {
+                // Only rebalancePath releases the path, so drop the references here
+                Arrays.fill(path, 0, depth, null);
+                V old = node.value;
+                node.value = value;
+                return old;
+            }
+            path[depth++] = node;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        if (root == null) compare(key, key); // type (and null) check, as TreeMap does
+
+        Node<K, V> inserted = new Node<>(key, value);
+        if (depth == 0) {
+            root = inserted;
+        } else if (cmp < 0) {
+            path[depth - 1].left = inserted;
+        } else {
+            path[depth - 1].right = inserted;
+        }
+        rebalancePath(depth);
+        size++;
+        modCount++;
+        return null;
+    }
+
+    // Unlinks the node holding the key. A node with two children is replaced
+    // by its in-order successor node (not by copying the successor's key), so
+    // entries already handed out keep their key and value.
+    private Node<K, V> deleteEntry(Object key) {
+        rotationsCount = 0;
+        int depth = 0;
+        Node<K, V> node = root;
+        while (node != null) {
+            int cmp = compare(key, node.key);
+            if (cmp == 0) break;
+            path[depth++] = node;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        if (node == null) {
+            Arrays.fill(path, 0, depth, null);
+            return null;
+        }
+
+        Node<K, V> removed = node;
+        if (node.left != null && node.right != null) {
+            int removedIndex = depth;
+            path[depth++] = node;
+            Node<K, V> successor = node.right;
+            while (successor.left != null) {
+                path[depth++] = successor;
+                successor = successor.left;
+            }
+            if (path[depth - 1] != removed) {
+                path[depth - 1].left = successor.right;
+                successor.right = removed.right;
+            }
+            successor.left = removed.left;
+            replaceChild(removedIndex - 1, removed, successor);
+            path[removedIndex] = successor;
+        } else {
+            replaceChild(depth - 1, node, node.left != null ? node.left : node.right);
+        }
+        rebalancePath(depth);
+        removed.left = removed.right = null;
+        size--;
+        modCount++;
+        return removed;
+    }
+
+    // ---- Lookups ----
+
+    final Node<K, V> getNode(Object key) {
+        if (comparator == null) Objects.requireNonNull(key);
+        Node<K, V> node = root;
+        while (node != null) {
+            int cmp = compare(key, node.key);
+            if (cmp == 0) return node;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    final Node<K, V> firstNode() {
+        Node<K, V> node = root;
+        if (node != null) {
+            while (node.left != null) node = node.left;
+        }
+        return node;
+    }
+
+    final Node<K, V> lastNode() {
+        Node<K, V> node = root;
+        if (node != null) {
+            while (node.right != null) node = node.right;
+        }
+        return node;
+    }
+
+    // Smallest node with a key >= key (> key when not inclusive)
+    final Node<K, V> ceilingNode(Object key, boolean inclusive) {
+        Node<K, V> best = null;
+        Node<K, V> node = root;
+        while (node != null) {
+            int cmp = compare(key, node.key);
+            if (cmp == 0 && inclusive) return node;
+            if (cmp < 0) {
+                best = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return best;
+    }
+
+    // Greatest node with a key <= key (< key when not inclusive)
+    final Node<K, V> floorNode(Object key, boolean inclusive) {
+        Node<K, V> best = null;
+        Node<K, V> node = root;
+        while (node != null) {
+            int cmp = compare(key, node.key);
+            if (cmp == 0 && inclusive) return node;
+            if (cmp > 0) {
+                best = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return best;
+    }
+
+    static <K, V> Map.Entry<K, V> exportEntry(Node<K, V> node) {
+        return node == null ? null : new AbstractMap.SimpleImmutableEntry<>(node);
+    }
+
+    static <K> K keyOrNull(Node<K, ?> node) {
+        return node == null ? null : node.key;
+    }
+
+    static <K> K keyOrThrow(Node<K, ?> node) {
+        if (node == null) throw new NoSuchElementException();
+        return node.key;
+    }
+
+    // ---- Map ----
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getNode(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = getNode(key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node<K, V> node = deleteEntry(key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) entrySet = new EntrySet(null, false);
+        return entrySet;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    // ---- SortedMap / NavigableMap ----
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public K firstKey() {
+        return keyOrThrow(firstNode());
+    }
+
+    @Override
+    public K lastKey() {
+        return keyOrThrow(lastNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return exportEntry(firstNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return exportEntry(lastNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        Node<K, V> node = firstNode();
+        if (node != null) deleteEntry(node.key);
+        return exportEntry(node);
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        Node<K, V> node = lastNode();
+        if (node != null) deleteEntry(node.key);
+        return exportEntry(node);
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return exportEntry(floorNode(key, false));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(floorNode(key, false));
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K key) {
+        return exportEntry(floorNode(key, true));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(floorNode(key, true));
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return exportEntry(ceilingNode(key, true));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(ceilingNode(key, true));
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K key) {
+        return exportEntry(ceilingNode(key, false));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(ceilingNode(key, false));
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        if (navigableKeySet == null) navigableKeySet = new AVLSet<>(this, false);
+        return navigableKeySet;
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        if (descendingMap == null) {
+            descendingMap = new SubMap(true, null, false, true, null, false, true);
+        }
+        return descendingMap;
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (compare(fromKey, toKey) > 0) throw new IllegalArgumentException("fromKey > toKey");
+        return new SubMap(false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        compare(toKey, toKey);
+        return new SubMap(true, null, false, false, toKey, inclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        compare(fromKey, fromKey);
+        return new SubMap(false, fromKey, inclusive, true, null, false, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    // ---- Views ----
+
+    // A range of the backing map, in ascending or descending order. Bounds are
+    // always kept in absolute (ascending) terms; the descending flag only swaps
+    // which side the navigation methods look at.
+    private final class SubMap extends AbstractMap<K, V> implements NavigableMap<K, V> {
+        final boolean fromStart;
+        final K lo;
+        final boolean loInclusive;
+        final boolean toEnd;
+        final K hi;
+        final boolean hiInclusive;
+        final boolean descending;
+
+        private transient Set<Map.Entry<K, V>> entrySetView;
+        private transient AVLSet<K> keySetView;
+
+        SubMap(boolean fromStart, K lo, boolean loInclusive,
+               boolean toEnd, K hi, boolean hiInclusive, boolean descending) {
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        boolean tooLow(Object key) {
+            if (fromStart) return false;
+            int cmp = compare(key, lo);
+            return cmp < 0 || (cmp == 0 && !loInclusive);
+        }
+
+        boolean tooHigh(Object key) {
+            if (toEnd) return false;
+            int cmp = compare(key, hi);
+            return cmp > 0 || (cmp == 0 && !hiInclusive);
+        }
+
+        boolean inRange(Object key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        private boolean inClosedRange(Object key) {
+            return (fromStart || compare(key, lo) >= 0) && (toEnd || compare(hi, key) >= 0);
+        }
+
+        private boolean inRange(Object key, boolean inclusive) {
+            return inclusive ? inRange(key) : inClosedRange(key);
+        }
+
+        Node<K, V> absLowest() {
+            Node<K, V> node = fromStart ? firstNode() : ceilingNode(lo, loInclusive);
+            return node == null || tooHigh(node.key) ? null : node;
+        }
+
+        Node<K, V> absHighest() {
+            Node<K, V> node = toEnd ? lastNode() : floorNode(hi, hiInclusive);
+            return node == null || tooLow(node.key) ? null : node;
+        }
+
+        Node<K, V> absCeiling(Object key, boolean inclusive) {
+            if (tooLow(key)) return absLowest();
+            Node<K, V> node = ceilingNode(key, inclusive);
+            return node == null || tooHigh(node.key) ? null : node;
+        }
+
+        Node<K, V> absFloor(Object key, boolean inclusive) {
+            if (tooHigh(key)) return absHighest();
+            Node<K, V> node = floorNode(key, inclusive);
+            return node == null || tooLow(node.key) ? null : node;
+        }
+
+        // Navigation in this view's own order
+        private Node<K, V> first() {
+            return descending ? absHighest() : absLowest();
+        }
+
+        private Node<K, V> last() {
+            return descending ? absLowest() : absHighest();
+        }
+
+        private Node<K, V> ceiling(Object key, boolean inclusive) {
+            return descending ? absFloor(key, inclusive) : absCeiling(key, inclusive);
+        }
+
+        private Node<K, V> floor(Object key, boolean inclusive) {
+            return descending ? absCeiling(key, inclusive) : absFloor(key, inclusive);
+        }
+
+        @Override
+        public int size() {
+            if (fromStart && toEnd) return size;
+            int count = 0;
+            for (Iterator<Map.Entry<K, V>> it = entrySet().iterator(); it.hasNext(); it.next()) {
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return absLowest() == null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return inRange(key) && AVLMap.this.containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            return inRange(key) ? AVLMap.this.get(key) : null;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if (!inRange(key)) throw new IllegalArgumentException("key out of range");
+            return AVLMap.this.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return inRange(key) ? AVLMap.this.remove(key) : null;
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            if (entrySetView == null) entrySetView = new EntrySet(this, descending);
+            return entrySetView;
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return descending ? Collections.reverseOrder(comparator) : comparator;
+        }
+
+        @Override
+        public K firstKey() {
+            return keyOrThrow(first());
+        }
+
+        @Override
+        public K lastKey() {
+            return keyOrThrow(last());
+        }
+
+        @Override
+        public Map.Entry<K, V> firstEntry() {
+            return exportEntry(first());
+        }
+
+        @Override
+        public Map.Entry<K, V> lastEntry() {
+            return exportEntry(last());
+        }
+
+        @Override
+        public Map.Entry<K, V> pollFirstEntry() {
+            Node<K, V> node = first();
+            if (node != null) deleteEntry(node.key);
+            return exportEntry(node);
+        }
+
+        @Override
+        public Map.Entry<K, V> pollLastEntry() {
+            Node<K, V> node = last();
+            if (node != null) deleteEntry(node.key);
+            return exportEntry(node);
+        }
+
+        @Override
+        public Map.Entry<K, V> lowerEntry(K key) {
+            return exportEntry(floor(key, false));
+        }
+
+        @Override
+        public K lowerKey(K key) {
+            return keyOrNull(floor(key, false));
+        }
+
+        @Override
+        public Map.Entry<K, V> floorEntry(K key) {
+            return exportEntry(floor(key, true));
+        }
+
+        @Override
+        public K floorKey(K key) {
+            return keyOrNull(floor(key, true));
+        }
+
+        @Override
+        public Map.Entry<K, V> ceilingEntry(K key) {
+            return exportEntry(ceiling(key, true));
+        }
+
+        @Override
+        public K ceilingKey(K key) {
+            return keyOrNull(ceiling(key, true));
+        }
+
+        @Override
+        public Map.Entry<K, V> higherEntry(K key) {
+            return exportEntry(ceiling(key, false));
+        }
+
+        @Override
+        public K higherKey(K key) {
+            return keyOrNull(ceiling(key, false));
+        }
+
+        @Override
+        public NavigableSet<K> navigableKeySet() {
+            if (keySetView == null) keySetView = new AVLSet<>(this, false);
+            return keySetView;
+        }
+
+        @Override
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public NavigableMap<K, V> descendingMap() {
+            return new SubMap(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+        }
+
+        // Builds a narrower view from bounds given in absolute order
+        private NavigableMap<K, V> narrow(boolean newFromStart, K newLo, boolean newLoInclusive,
+                                          boolean newToEnd, K newHi, boolean newHiInclusive) {
+            if (!newFromStart && !inRange(newLo, newLoInclusive)) {
+                throw new IllegalArgumentException("fromKey out of range");
+            }
+            if (!newToEnd && !inRange(newHi, newHiInclusive)) {
+                throw new IllegalArgumentException("toKey out of range");
+            }
+            if (newFromStart) {
+                newLo = lo;
+                newLoInclusive = loInclusive;
+                newFromStart = fromStart;
+            }
+            if (newToEnd) {
+                newHi = hi;
+                newHiInclusive = hiInclusive;
+                newToEnd = toEnd;
+            }
+            return new SubMap(newFromStart, newLo, newLoInclusive, newToEnd, newHi, newHiInclusive, descending);
+        }
+
+        @Override
+        public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            if (descending) {
+                if (compare(toKey, fromKey) > 0) throw new IllegalArgumentException("fromKey > toKey");
+                return narrow(false, toKey, toInclusive, false, fromKey, fromInclusive);
+            }
+            if (compare(fromKey, toKey) > 0) throw new IllegalArgumentException("fromKey > toKey");
+            return narrow(false, fromKey, fromInclusive, false, toKey, toInclusive);
+        }
+
+        @Override
+        public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+            return descending
+                    ? narrow(false, toKey, inclusive, true, null, false)
+                    : narrow(true, null, false, false, toKey, inclusive);
+        }
+
+        @Override
+        public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+            return descending
+                    ? narrow(true, null, false, false, fromKey, inclusive)
+                    : narrow(false, fromKey, inclusive, true, null, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        private final SubMap bounds;
+        private final boolean descending;
+
+        EntrySet(SubMap bounds, boolean descending) {
+            this.bounds = bounds;
+            this.descending = descending;
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator(bounds, descending);
+        }
+
+        @Override
+        public int size() {
+            return bounds == null ? size : bounds.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> entry)) return false;
+            if (bounds != null && !bounds.inRange(entry.getKey())) return false;
+            Node<K, V> node = getNode(entry.getKey());
+            return node != null && Objects.equals(node.value, entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) return false;
+            deleteEntry(((Map.Entry<?, ?>) o).getKey());
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            if (bounds == null) {
+                AVLMap.this.clear();
+            } else {
+                super.clear();
+            }
+        }
+    }
+
+    // In-order cursor with an explicit stack of the ancestors still to be
+    // visited, so every step is amortized O(1) and allocates nothing
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private final Node<K, V>[] stack = newPath();
+        private final SubMap bounds;
+        private final boolean descending;
+        private int depth;
+        private K lastKey;
+        private boolean canRemove;
+        private int expectedModCount;
+
+        EntryIterator(SubMap bounds, boolean descending) {
+            this.bounds = bounds;
+            this.descending = descending;
+            expectedModCount = modCount;
+            if (!descending) {
+                if (bounds == null || bounds.fromStart) pushSpine(root);
+                else seek(bounds.lo, bounds.loInclusive);
+            } else {
+                if (bounds == null || bounds.toEnd) pushSpine(root);
+                else seek(bounds.hi, bounds.hiInclusive);
+            }
+        }
+
+        private void pushSpine(Node<K, V> node) {
+            while (node != null) {
+                stack[depth++] = node;
+                node = descending ? node.right : node.left;
+            }
+        }
+
+        // Positions the cursor at the first key at or after (before, when
+        // descending) the given key
+        private void seek(Object key, boolean inclusive) {
+            depth = 0;
+            Node<K, V> node = root;
+            while (node != null) {
+                int cmp = compare(key, node.key);
+                if (descending) cmp = -cmp;
+                if (cmp < 0 || (cmp == 0 && inclusive)) {
+                    stack[depth++] = node;
+                    node = descending ? node.right : node.left;
+                } else {
+                    node = descending ? node.left : node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (depth == 0) return false;
+            if (bounds == null) return true;
+            K next = stack[depth - 1].key;
+            return descending ? !bounds.tooLow(next) : !bounds.tooHigh(next);
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (!hasNext()) throw new NoSuchElementException();
+            Node<K, V> node = stack[--depth];
+            stack[depth] = null;
+            pushSpine(descending ? node.left : node.right);
+            lastKey = node.key;
+            canRemove = true;
+            return node;
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) throw new IllegalStateException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            deleteEntry(lastKey);
+            expectedModCount = modCount;
+            canRemove = false;
+            seek(lastKey, false);
+        }
+    }
+
+    static final class Node<K, V> implements Map.Entry<K, V> {
+        private K key;
+        private V value;
+        private int height;
+        private Node<K, V> left;
+        private Node<K, V> right;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+            height = 0;
+            left = right = null;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        private static int height(Node<?, ?> node) {
+            return node != null ? node.height : -1;
+        }
+
+        static void updateHeight(Node<?, ?> node) {
+            node.height = Math.max(height(node.left), height(node.right)) + 1;
+        }
+
+        static int balanceFactor(Node<?, ?> node) {
+            return height(node.right) - height(node.left);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Map.Entry<?, ?> e
+                    && Objects.equals(key, e.getKey())
+                    && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.equiperocket.projects.avltree;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+
+/**
+ * A {@link NavigableSet} backed by an {@link AVLMap}, the AVL counterpart of
+ * {@link java.util.TreeSet}. Instances are also used as the key set views of
+ * {@link AVLMap} and its sub-maps; those views do not support {@code add}.
+ *
+ * @param <E> The type of elements maintained by this set
+ */
+public class AVLSet<E> extends AbstractSet<E> implements NavigableSet<E> {
+
+    private static final Object PRESENT = new Object();
+
+    private final NavigableMap<E, ?> map;
+    private final boolean addSupported;
+
+    public AVLSet() {
+        this(new AVLMap<E, Object>(), true);
+    }
+
+    public AVLSet(Comparator<? super E> comparator) {
+        this(new AVLMap<E, Object>(comparator), true);
+    }
+
+    public AVLSet(Collection<? extends E> elements) {
+        this();
+        addAll(elements);
+    }
+
+    AVLSet(NavigableMap<E, ?> map, boolean addSupported) {
+        this.map = map;
+        this.addSupported = addSupported;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean add(E element) {
+        if (!addSupported) throw new UnsupportedOperationException();
+        // Only sets built over a map of PRESENT markers are addable
+        return ((NavigableMap<E, Object>) map).put(element, PRESENT) == null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!map.containsKey(o)) return false;
+        map.remove(o);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return map.containsKey(o);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<? extends Map.Entry<E, ?>> entries = map.entrySet().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return entries.next().getKey();
+            }
+
+            @Override
+            public void remove() {
+                entries.remove();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return map.comparator();
+    }
+
+    @Override
+    public E first() {
+        return map.firstKey();
+    }
+
+    @Override
+    public E last() {
+        return map.lastKey();
+    }
+
+    @Override
+    public E lower(E e) {
+        return map.lowerKey(e);
+    }
+
+    @Override
+    public E floor(E e) {
+        return map.floorKey(e);
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return map.ceilingKey(e);
+    }
+
+    @Override
+    public E higher(E e) {
+        return map.higherKey(e);
+    }
+
+    @Override
+    public E pollFirst() {
+        Map.Entry<E, ?> entry = map.pollFirstEntry();
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public E pollLast() {
+        Map.Entry<E, ?> entry = map.pollLastEntry();
+        return entry == null ? null : entry.getKey();
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new AVLSet<>(map.descendingMap(), addSupported);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return new AVLSet<>(map.subMap(fromElement, fromInclusive, toElement, toInclusive), addSupported);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return new AVLSet<>(map.headMap(toElement, inclusive), addSupported);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return new AVLSet<>(map.tailMap(fromElement, inclusive), addSupported);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
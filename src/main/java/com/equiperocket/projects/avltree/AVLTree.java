@@ -1,27 +1,155 @@
 package com.equiperocket.projects.avltree;
 
-public class AVLTree implements Tree<Integer, AVLTree.Node> {
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class AVLTree implements BinaryTree<AVLTree.Node> {
+
+    // An AVL tree of n nodes is at most ~1.44 * log2(n) high, so this bounds
+    // every root-to-leaf path for any number of int keys
+    private static final int MAX_PATH = 64;
+    // Below this many keys Arrays.sort beats the fork/join overhead of parallelSort
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+    private static final int WRITE_CHUNK = 1 << 16;
+    // Set operations over fewer keys than this run in the current task
+    private static final int PARALLEL_GRAIN = 1 << 13;
+    // "-2147483648 " is the longest key text
+    private static final int MAX_KEY_CHARS = 12;
+    // Source of ownership stamps, see snapshot()
+    private static final AtomicInteger EPOCHS = new AtomicInteger();
+    private static final int MIN_FILTER_CAPACITY = 1 << 10;
 
     private Node root;
+    private int size;
     private int rotationsCount;
+    private int epoch;
+    private final Node[] path;
+    private AVLTreeMetrics metrics;
+    private BlockedBloomFilter filter;
+    // Bumped on every structural change so a Finger can tell its path is stale
+    private int modCount;
 
     public AVLTree() {
         root = null;
+        size = 0;
         rotationsCount = 0;
+        epoch = EPOCHS.incrementAndGet();
+        path = new Node[MAX_PATH];
     }
 
+    @Override
     public Node getRoot() {
         return root;
     }
 
+    // Starts recording operation counters into the given metrics, or stops with null
+    public void setMetrics(AVLTreeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public AVLTreeMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Puts a Bloom filter in front of find/contains so that most lookups of
+    // absent keys skip the descent. It is sized for twice the current keys and
+    // rebuilt when it fills up or when removed keys make up half its capacity.
+    public void enableBloomFilter() {
+        rebuildFilter();
+    }
+
+    public void disableBloomFilter() {
+        filter = null;
+    }
+
+    // The current filter (its statistics restart on every rebuild), or null
+    public BlockedBloomFilter getBloomFilter() {
+        return filter;
+    }
+
+    private void rebuildFilter() {
+        BlockedBloomFilter rebuilt = new BlockedBloomFilter(Math.max(MIN_FILTER_CAPACITY, 2 * size));
+        forEach(TraversalOrder.IN_ORDER, rebuilt::add);
+        filter = rebuilt;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Persistence is copy-on-write: every node carries the epoch of the tree that
+    // created it, and a tree only mutates nodes stamped with its own epoch. Taking
+    // a snapshot gives both trees fresh epochs, so from then on each of them copies
+    // a shared node (path copying) before its first change, leaving the other
+    // version untouched. Without snapshots all nodes match and nothing is copied.
+    @Override
+    public AVLTree snapshot() {
+        AVLTree copy = new AVLTree();
+        copy.root = root;
+        copy.size = size;
+        epoch = EPOCHS.incrementAndGet();
+        return copy;
+    }
+
+    // Makes this tree hold the same keys as a snapshot, in O(1)
+    public void restore(AVLTree snapshot) {
+        root = snapshot.root;
+        size = snapshot.size;
+        modCount++;
+        epoch = EPOCHS.incrementAndGet();
+        snapshot.epoch = EPOCHS.incrementAndGet();
+        if (filter != null) rebuildFilter();
+    }
+
+    // Read-only copy of the current keys laid out for fast lookups
+    public FrozenAVLTree freeze() {
+        return new FrozenAVLTree(toSortedArray());
+    }
+
+    private Node writable(Node node) {
+        return node == null || node.epoch == epoch ? node : node.copy(epoch);
+    }
+
+    // Swaps every node of the recorded path for one this tree may modify
+    private void makePathWritable(Node[] path, int depth) {
+        for (int i = 0; i < depth; i++) {
+            Node node = writable(path[i]);
+            if (node != path[i]) {
+                if (i == 0) {
+                    root = node;
+                } else {
+                    replaceChild(path[i - 1], path[i], node);
+                }
+                path[i] = node;
+            }
+        }
+    }
+
     // Left element of root now becomes root
     private Node rotateRight(Node node) {
-        Node left = node.left;
+        Node left = writable(node.left);
         node.left = left.right;
         left.right = node;
 
-        Node.updateHeight(node);
-        Node.updateHeight(left);
+        Node.update(node);
+        Node.update(left);
 
         rotationsCount++;
         return left;
@@ -29,189 +157,966 @@ public class AVLTree implements Tree<Integer, AVLTree.Node> {
 
     // Right element of root now becomes root
     private Node rotateLeft(Node node) {
-        Node right = node.right;
+        Node right = writable(node.right);
         node.right = right.left;
         right.left = node;
 
-        Node.updateHeight(node);
-        Node.updateHeight(right);
+        Node.update(node);
+        Node.update(right);
 
         rotationsCount++;
         return right;
     }
 
     private Node rebalance(Node node) {
-        Node.updateHeight(node);
+        Node.update(node);
         int balance = Node.balanceFactor(node);
         // Positive unbalance in root tree (right has more levels than left)
         // and not positive (un)balance in right subtree requires double rotation.
         // The same happens with negative unbalance in root tree. If the left
         // subtree doesn't have a negative (un)balance too, we rotate two times.
         if (balance > 1) {
-            if (Node.balanceFactor(node.right) < 0) {
+            boolean isDouble = Node.balanceFactor(node.right) < 0;
+            if (isDouble) {
                 // Rotation necessary to allow balance (RL -> Right Rotation and Left Rotation)
-                node.right = rotateRight(node.right);
+                node.right = rotateRight(writable(node.right));
             }
             node = rotateLeft(node);
+            if (metrics != null) metrics.recordRotation(isDouble);
         } else if (balance < -1) {
-            if (Node.balanceFactor(node.left) > 0) {
+            boolean isDouble = Node.balanceFactor(node.left) > 0;
+            if (isDouble) {
                 // Rotation necessary to allow balance (LR -> Left Rotation and Right Rotation)
-                node.left = rotateLeft(node.left);
+                node.left = rotateLeft(writable(node.left));
             }
             node = rotateRight(node);
+            if (metrics != null) metrics.recordRotation(isDouble);
         }
         return node;
     }
 
     @Override
     public String insert(Integer value) throws RuntimeException {
-        rotationsCount = 0;
-        root = insertRecursive(root, value);
+        if (!insertKey(value)) {
+            throw new RuntimeException(String.format("Value %d already exists in the tree!", value));
+        }
         return "Rotations made in insertion: " + rotationsCount;
     }
 
-    private Node insertRecursive(Node node, Integer value) {
-        if (node == null) return new Node(value);
+    // Allocation-free on duplicates: the outcome is the return value and the
+    // rotations of the call are available through getLastRotationsCount()
+    @Override
+    public boolean insertKey(int value) {
+        rotationsCount = 0;
+        int depth = 0;
+        Node node = root;
+        while (node != null && value != node.value) {
+            path[depth++] = node;
+            node = value < node.value ? node.left : node.right;
+        }
+        if (node != null) {
+            // Only rebalancePath releases the path, so drop the references here
+            Arrays.fill(path, 0, depth, null);
+            return false;
+        }
 
-        if (value < node.value) {
-            node.left = insertRecursive(node.left, value);
-        } else if (value > node.value) {
-            node.right = insertRecursive(node.right, value);
+        if (metrics != null) metrics.recordInsert(depth);
+        attach(path, depth, value, true);
+        return true;
+    }
+
+    // Links a new leaf below path[depth - 1] and rebalances the path. Returns how
+    // many path entries still lead to the same subtrees (see rebalancePath).
+    private int attach(Node[] path, int depth, int value, boolean release) {
+        makePathWritable(path, depth);
+        Node inserted = new Node(value, epoch);
+        if (depth == 0) {
+            root = inserted;
+        } else if (value < path[depth - 1].value) {
+            path[depth - 1].left = inserted;
         } else {
-            throw new RuntimeException(String.format("Value %d already exists in the tree!", value));
+            path[depth - 1].right = inserted;
         }
-
-        return rebalance(node);
+        size++;
+        modCount++;
+        int valid = rebalancePath(path, depth, 1, release);
+        if (filter != null) {
+            if (filter.keys() >= filter.capacity()) {
+                rebuildFilter();
+            } else {
+                filter.add(value);
+            }
+        }
+        return valid;
     }
 
     @Override
     public Node find(Integer value) {
-        return findRecursive(root, value);
+        return findNode(value);
+    }
+
+    public Node findNode(int value) {
+        BlockedBloomFilter filter = this.filter;
+        if (filter != null) {
+            if (!filter.mightContain(value)) {
+                filter.recordRejected();
+                // Still a lookup, answered without touching a node
+                AVLTreeMetrics metrics = this.metrics;
+                if (metrics != null) metrics.recordLookup(0);
+                return null;
+            }
+            Node node = findNodeUnfiltered(value);
+            if (node == null) filter.recordFalsePositive();
+            return node;
+        }
+        return findNodeUnfiltered(value);
+    }
+
+    private Node findNodeUnfiltered(int value) {
+        AVLTreeMetrics metrics = this.metrics;
+        if (metrics != null) return findNodeCounted(value, metrics);
+        Node node = root;
+        while (node != null && value != node.value) {
+            node = value < node.value ? node.left : node.right;
+        }
+        return node;
     }
 
-    private Node findRecursive(Node node, Integer value) {
-        if (node == null) return null;
-        if (value.equals(node.value)) return node;
+    private Node findNodeCounted(int value, AVLTreeMetrics metrics) {
+        int comparisons = 0;
+        Node node = root;
+        while (node != null) {
+            comparisons++;
+            if (value == node.value) break;
+            node = value < node.value ? node.left : node.right;
+        }
+        metrics.recordLookup(comparisons);
+        return node;
+    }
 
-        return value < node.value
-                ? findRecursive(node.left, value)
-                : findRecursive(node.right, value);
+    @Override
+    public boolean contains(int value) {
+        return findNode(value) != null;
     }
 
     @Override
     public String remove(Integer value) throws RuntimeException {
-        rotationsCount = 0;
-        root = deleteRecursive(root, value);
+        if (!removeKey(value)) {
+            throw new RuntimeException(String.format("Value %d not found in the tree!", value));
+        }
         return "Rotations made in removal: " + rotationsCount;
     }
 
-    private Node deleteRecursive(Node node, Integer value) {
+    @Override
+    public boolean removeKey(int value) {
+        rotationsCount = 0;
+        int depth = 0;
+        Node node = root;
+        while (node != null && value != node.value) {
+            path[depth++] = node;
+            node = value < node.value ? node.left : node.right;
+        }
         if (node == null) {
-            throw new RuntimeException(String.format("Value %d not found in the tree!", value));
+            Arrays.fill(path, 0, depth, null);
+            return false;
         }
 
-        if (value < node.value) {
-            node.left = deleteRecursive(node.left, value);
-        } else if (value > node.value) {
-            node.right = deleteRecursive(node.right, value);
+        detach(path, depth, node, true);
+        return true;
+    }
+
+    // Unlinks node, whose ancestors are path[0, found). Returns how many path
+    // entries are still valid; the removed position itself never is, since it
+    // may now hold the successor's key.
+    private int detach(Node[] path, int found, Node node, boolean release) {
+        int depth = found;
+
+        // In case of 2 children, take the smallest value in the RIGHT subtree to
+        // replace the removed one and unlink that leftmost node instead.
+        int target = -1;
+        if (node.left != null && node.right != null) {
+            target = depth;
+            path[depth++] = node;
+            node = node.right;
+            while (node.left != null) {
+                path[depth++] = node;
+                node = node.left;
+            }
+        }
+        if (metrics != null) metrics.recordRemove(found, depth + 1);
+        makePathWritable(path, depth);
+        if (target >= 0) path[target].value = node.value;
+
+        Node child = node.left != null ? node.left : node.right;
+        if (depth == 0) {
+            root = child;
         } else {
-            if (node.left == null || node.right == null) {
-                node = node.left == null ? node.right : node.left;
+            replaceChild(path[depth - 1], node, child);
+        }
+        size--;
+        modCount++;
+        int valid = Math.min(found, rebalancePath(path, depth, -1, release));
+        // Removed keys stay in the filter and only cost false positives
+        if (filter != null && filter.keys() - size > filter.capacity() / 2) rebuildFilter();
+        return valid;
+    }
+
+    @Override
+    public int getLastRotationsCount() {
+        return rotationsCount;
+    }
+
+    // Walks the recorded path bottom-up, rebalancing the ancestors of the
+    // changed position and relinking whichever subtree root a rotation produced.
+    // Once an ancestor keeps its height without rotating, nothing above it can
+    // be unbalanced, so the rest of the path only gets its sizes moved by delta.
+    // Returns the index of the highest rotated entry (depth if none): entries
+    // above it still root the same subtrees. With release the path is cleared.
+    private int rebalancePath(Node[] path, int depth, int delta, boolean release) {
+        int valid = depth;
+        boolean settled = false;
+        for (int i = depth - 1; i >= 0; i--) {
+            Node node = path[i];
+            if (settled) {
+                node.size += delta;
             } else {
-                node = reorganizeSubTree(node); // In case of 2 children
+                int height = node.height;
+                Node balanced = rebalance(node);
+                if (balanced != node) {
+                    if (i == 0) {
+                        root = balanced;
+                    } else {
+                        replaceChild(path[i - 1], node, balanced);
+                    }
+                    valid = i;
+                } else {
+                    settled = node.height == height;
+                }
+            }
+            if (release) path[i] = null;
+        }
+        return valid;
+    }
+
+    // A search finger for key streams with locality, see Finger
+    public Finger finger() {
+        return new Finger();
+    }
+
+    private static void replaceChild(Node parent, Node oldChild, Node newChild) {
+        if (parent.left == oldChild) {
+            parent.left = newChild;
+        } else {
+            parent.right = newChild;
+        }
+    }
+
+    // Replaces the content of the tree with the given strictly ascending keys.
+    // The middle key of every range becomes the subtree root, so the result is
+    // perfectly balanced and built in O(n) without a single rotation.
+    public void bulkLoad(int[] sorted) {
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i - 1] >= sorted[i]) {
+                throw new IllegalArgumentException(String.format("Keys must be strictly ascending (index %d)!", i));
             }
         }
+        rotationsCount = 0;
+        root = build(sorted, 0, sorted.length - 1, epoch);
+        size = sorted.length;
+        modCount++;
+        if (filter != null) rebuildFilter();
+    }
+
+    private static Node build(int[] keys, int low, int high, int epoch) {
+        if (low > high) return null;
 
-        node = node != null ? rebalance(node) : null;
+        int mid = (low + high) >>> 1;
+        Node node = new Node(keys[mid], epoch);
+        node.left = build(keys, low, mid - 1, epoch);
+        node.right = build(keys, mid + 1, high, epoch);
+        Node.update(node);
         return node;
     }
 
-    // Take the smallest value in the RIGHT subtree to replace the removed parent.
-    // Another option would be to pick the biggest value int the left subtree.
-    // After the process we clean the right/left subtree by removing the old child.
-    private Node reorganizeSubTree(Node root) {
-        Integer smallestValue = mostLeftChild(root.right).value;
-        root.value = smallestValue;
-        root.right = deleteRecursive(root.right, smallestValue);
-        return root;
+    // Inserts a batch of keys in any order, skipping the ones already present,
+    // and returns how many were added. The batch is sorted once; when it is large
+    // compared to the tree, it is merged with the current keys and the tree is
+    // rebuilt in O(n + m) instead of doing m descents of O(log n) each.
+    public int insertAll(int[] unsorted) {
+        int[] batch = unsorted.clone();
+        if (batch.length >= PARALLEL_SORT_THRESHOLD) {
+            Arrays.parallelSort(batch);
+        } else {
+            Arrays.sort(batch);
+        }
+        int count = dedupe(batch);
+
+        int before = size;
+        if ((long) count * (32 - Integer.numberOfLeadingZeros(size)) < size) {
+            for (int i = 0; i < count; i++) {
+                insertKey(batch[i]);
+            }
+            rotationsCount = 0;
+            return size - before;
+        }
+
+        int[] merged = merge(toSortedArray(), batch, count);
+        rotationsCount = 0;
+        root = build(merged, 0, merged.length - 1, epoch);
+        size = merged.length;
+        modCount++;
+        if (filter != null) rebuildFilter();
+        return size - before;
     }
 
-    private Node mostLeftChild(Node node) {
-        return node.left == null ? node : mostLeftChild(node.left);
+    // Compacts a sorted array in place and returns the number of distinct keys
+    private static int dedupe(int[] sorted) {
+        if (sorted.length == 0) return 0;
+        int count = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[count - 1]) sorted[count++] = sorted[i];
+        }
+        return count;
     }
 
-    @Override
-    public String traverseInOrder() {
-        StringBuilder sb = new StringBuilder();
-        sb = traverseInOrder(root, sb);
-        return sb.toString();
+    private static int[] merge(int[] a, int[] b, int bCount) {
+        int[] out = new int[a.length + bCount];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < bCount) {
+            if (a[i] < b[j]) {
+                out[k++] = a[i++];
+            } else if (a[i] > b[j]) {
+                out[k++] = b[j++];
+            } else {
+                out[k++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) out[k++] = a[i++];
+        while (j < bCount) out[k++] = b[j++];
+        return k == out.length ? out : Arrays.copyOf(out, k);
     }
 
-    private StringBuilder traverseInOrder(Node node, StringBuilder sb) {
-        if (node != null) {
-            traverseInOrder(node.left, sb);
-            sb.append(String.format("%d ", node.value));
-            traverseInOrder(node.right, sb);
+    public int[] toSortedArray() {
+        int[] keys = new int[size];
+        fillInOrder(root, keys, 0);
+        return keys;
+    }
+
+    private static int fillInOrder(Node node, int[] keys, int index) {
+        if (node == null) return index;
+        index = fillInOrder(node.left, keys, index);
+        keys[index++] = node.value;
+        return fillInOrder(node.right, keys, index);
+    }
+
+    // Number of keys strictly smaller than the given one
+    public int rank(int value) {
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            if (value <= node.value) {
+                node = node.left;
+            } else {
+                rank += Node.size(node.left) + 1;
+                node = node.right;
+            }
         }
-        return sb;
+        return rank;
     }
 
-    @Override
-    public String traversePreOrder() {
-        StringBuilder sb = new StringBuilder();
-        sb = traversePreOrder(root, sb);
-        return sb.toString();
+    // Number of keys smaller than or equal to the given one
+    private int rankInclusive(int value) {
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            if (value < node.value) {
+                node = node.left;
+            } else {
+                rank += Node.size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
     }
 
-    private StringBuilder traversePreOrder(Node node, StringBuilder sb) {
-        if (node != null) {
-            sb.append(String.format("%d ", node.value));
-            traversePreOrder(node.left, sb);
-            traversePreOrder(node.right, sb);
+    // The k-th smallest key, counting from 0
+    public int select(int k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for size %d!", k, size));
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = Node.size(node.left);
+            if (k < leftSize) {
+                node = node.left;
+            } else if (k > leftSize) {
+                k -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    // Number of keys in the closed interval [low, high]
+    public int countInRange(int low, int high) {
+        if (low > high) return 0;
+        return rankInclusive(high) - rank(low);
+    }
+
+    // Nearest-rank quantile: the smallest key with at least q * size keys at or
+    // below it, so quantile(0.5) is the (lower) median
+    public int quantile(double q) {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException(String.format("Quantile %s must be between 0 and 1!", q));
+        }
+        if (size == 0) throw new IllegalStateException("The tree is empty!");
+        return select(Math.max(0, (int) Math.ceil(q * size) - 1));
+    }
+
+    // ---- Join-based set algebra ----
+    //
+    // join(left, key, right) descends the spine of the taller tree until the
+    // heights differ by at most one, hangs the key there and rebalances back up,
+    // so it costs O(|height(left) - height(right)|). split and the set operations
+    // are built on it and never touch their inputs: both input trees are frozen
+    // (given new epochs, see snapshot()) and the result shares their subtrees.
+
+    // Keys smaller and greater than the split key, and whether it was present
+    public record Split(AVLTree left, boolean found, AVLTree right) {
+    }
+
+    private record Parts(Node left, boolean found, Node right) {
+    }
+
+    private record Last(Node rest, int key) {
+    }
+
+    private enum SetOp { UNION, INTERSECTION, DIFFERENCE, FILTER }
+
+    private static final Parts NO_PARTS = new Parts(null, false, null);
+
+    private AVLTree(Node root, int epoch) {
+        this.root = root;
+        this.size = Node.size(root);
+        this.rotationsCount = 0;
+        this.epoch = epoch;
+        this.path = new Node[MAX_PATH];
+    }
+
+    private void shareNodes() {
+        epoch = EPOCHS.incrementAndGet();
+    }
+
+    public Split split(int key) {
+        shareNodes();
+        AVLTree worker = new AVLTree();
+        Parts parts = worker.split(root, key);
+        return new Split(new AVLTree(parts.left, worker.epoch), parts.found,
+                new AVLTree(parts.right, EPOCHS.incrementAndGet()));
+    }
+
+    // Every key of left must be smaller than key and every key of right greater
+    public static AVLTree join(AVLTree left, int key, AVLTree right) {
+        if (!left.isEmpty() && left.select(left.size - 1) >= key
+                || !right.isEmpty() && right.select(0) <= key) {
+            throw new IllegalArgumentException(String.format("Key %d does not separate the two trees!", key));
+        }
+        left.shareNodes();
+        right.shareNodes();
+        AVLTree result = new AVLTree();
+        result.root = result.joinNodes(left.root, key, right.root);
+        result.size = result.root.size;
+        return result;
+    }
+
+    public AVLTree union(AVLTree other) {
+        return setOperation(SetOp.UNION, other, null);
+    }
+
+    public AVLTree intersection(AVLTree other) {
+        return setOperation(SetOp.INTERSECTION, other, null);
+    }
+
+    // Keys of this tree that are not in the other one
+    public AVLTree difference(AVLTree other) {
+        return setOperation(SetOp.DIFFERENCE, other, null);
+    }
+
+    public AVLTree filter(IntPredicate predicate) {
+        return setOperation(SetOp.FILTER, this, predicate);
+    }
+
+    private AVLTree setOperation(SetOp op, AVLTree other, IntPredicate predicate) {
+        shareNodes();
+        other.shareNodes();
+        AVLTree result = new AVLTree();
+        result.root = new SetTask(op, root, other.root, predicate, result.epoch).invoke();
+        result.size = Node.size(result.root);
+        return result;
+    }
+
+    private Node joinNodes(Node left, int key, Node right) {
+        int leftHeight = Node.height(left), rightHeight = Node.height(right);
+        if (leftHeight > rightHeight + 1) return joinRight(left, key, right);
+        if (rightHeight > leftHeight + 1) return joinLeft(left, key, right);
+
+        Node node = new Node(key, epoch);
+        node.left = left;
+        node.right = right;
+        Node.update(node);
+        return node;
+    }
+
+    // left is the taller tree: walk down its right spine
+    private Node joinRight(Node left, int key, Node right) {
+        if (Node.height(left) <= Node.height(right) + 1) return joinNodes(left, key, right);
+
+        Node node = writable(left);
+        node.right = joinRight(node.right, key, right);
+        return rebalance(node);
+    }
+
+    // right is the taller tree: walk down its left spine
+    private Node joinLeft(Node left, int key, Node right) {
+        if (Node.height(right) <= Node.height(left) + 1) return joinNodes(left, key, right);
+
+        Node node = writable(right);
+        node.left = joinLeft(left, key, node.left);
+        return rebalance(node);
+    }
+
+    // Concatenation of two trees whose keys are already ordered: the maximum of
+    // left is taken out and used as the joining key
+    private Node join2(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        Last last = splitLast(left);
+        return joinNodes(last.rest, last.key, right);
+    }
+
+    private Last splitLast(Node node) {
+        if (node.right == null) return new Last(node.left, node.value);
+        Last last = splitLast(node.right);
+        return new Last(joinNodes(node.left, node.value, last.rest), last.key);
+    }
+
+    private Parts split(Node node, int key) {
+        if (node == null) return NO_PARTS;
+        if (key == node.value) return new Parts(node.left, true, node.right);
+
+        if (key < node.value) {
+            Parts parts = split(node.left, key);
+            return new Parts(parts.left, parts.found, joinNodes(parts.right, node.value, node.right));
+        }
+        Parts parts = split(node.right, key);
+        return new Parts(joinNodes(node.left, node.value, parts.left), parts.found, parts.right);
+    }
+
+    // Splits a by the root key of b (or a by its own root, when filtering),
+    // solves both halves recursively and joins the results. Halves of large
+    // subproblems are forked so the two recursive calls run in parallel.
+    private Node combine(SetOp op, Node a, Node b, IntPredicate predicate) {
+        switch (op) {
+            case UNION -> {
+                if (a == null) return b;
+                if (b == null) return a;
+            }
+            case INTERSECTION -> {
+                if (a == null || b == null) return null;
+            }
+            case DIFFERENCE -> {
+                if (a == null) return null;
+                if (b == null) return a;
+            }
+            case FILTER -> {
+                if (a == null) return null;
+            }
+        }
+
+        int key;
+        boolean found;
+        Node aLeft, aRight, bLeft, bRight;
+        if (op == SetOp.FILTER) {
+            key = a.value;
+            found = true;
+            aLeft = a.left;
+            aRight = a.right;
+            bLeft = bRight = null;
+        } else {
+            key = b.value;
+            Parts parts = split(a, key);
+            found = parts.found;
+            aLeft = parts.left;
+            aRight = parts.right;
+            bLeft = b.left;
+            bRight = b.right;
+        }
+
+        Node left, right;
+        if (Node.size(a) + Node.size(b) > PARALLEL_GRAIN) {
+            SetTask task = new SetTask(op, aLeft, bLeft, predicate, epoch);
+            task.fork();
+            right = combine(op, aRight, bRight, predicate);
+            left = task.join();
+        } else {
+            left = combine(op, aLeft, bLeft, predicate);
+            right = combine(op, aRight, bRight, predicate);
+        }
+
+        return switch (op) {
+            case UNION -> joinNodes(left, key, right);
+            case INTERSECTION -> found ? joinNodes(left, key, right) : join2(left, right);
+            case DIFFERENCE -> join2(left, right);
+            case FILTER -> {
+                if (!predicate.test(key)) yield join2(left, right);
+                // Nothing filtered out below: keep sharing the original subtree
+                yield left == a.left && right == a.right ? a : joinNodes(left, key, right);
+            }
+        };
+    }
+
+    // Each task works through its own AVLTree so the rotation counter stays
+    // thread-confined; all of them stamp new nodes with the result's epoch.
+    // Every node a task creates ends up in exactly one place of the result,
+    // which is what makes mutating it in place from that task safe.
+    @SuppressWarnings("serial") // Only ever run by a fork/join pool, never serialized
+    private static final class SetTask extends RecursiveTask<Node> {
+        private final SetOp op;
+        private final Node a;
+        private final Node b;
+        private final IntPredicate predicate;
+        private final int epoch;
+
+        SetTask(SetOp op, Node a, Node b, IntPredicate predicate, int epoch) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.predicate = predicate;
+            this.epoch = epoch;
+        }
+
+        @Override
+        protected Node compute() {
+            return new AVLTree(null, epoch).combine(op, a, b, predicate);
         }
-        return sb;
+    }
+
+    @Override
+    public String traverseInOrder() {
+        return traverse(TraversalOrder.IN_ORDER);
+    }
+
+    @Override
+    public String traversePreOrder() {
+        return traverse(TraversalOrder.PRE_ORDER);
     }
 
     @Override
     public String traversePostOrder() {
+        return traverse(TraversalOrder.POST_ORDER);
+    }
+
+    private String traverse(TraversalOrder order) {
         StringBuilder sb = new StringBuilder();
-        sb = traversePostOrder(root, sb);
+        forEach(order, value -> sb.append(value).append(' '));
         return sb.toString();
     }
 
-    private StringBuilder traversePostOrder(Node node, StringBuilder sb) {
-        if (node != null) {
-            traversePostOrder(node.left, sb);
-            traversePostOrder(node.right, sb);
-            sb.append(String.format("%d ", node.value));
+    // Pushes every key to the action without building any intermediate text.
+    // The tree must not be modified while a traversal or cursor is in progress.
+    public void forEach(TraversalOrder order, IntConsumer action) {
+        Cursor cursor = new Cursor(root, order);
+        while (cursor.hasNext()) {
+            action.accept(cursor.nextNode().value);
         }
-        return sb;
     }
 
-    protected class Node {
-        private Integer value;
-        private Integer height;
+    // Lazy cursor over the keys, backed by an explicit stack instead of recursion
+    public PrimitiveIterator.OfInt iterator(TraversalOrder order) {
+        return new Cursor(root, order);
+    }
+
+    // Sequential streams in key order; call parallel() to have them split along
+    // subtree boundaries, with exact sizes taken from the subtree size fields
+    public IntStream keys() {
+        return StreamSupport.intStream(new AVLTreeSpliterator.OfKey(null, root), false);
+    }
+
+    public Stream<Node> nodes() {
+        return StreamSupport.stream(new AVLTreeSpliterator.OfNode(null, root), false);
+    }
+
+    // Streams the keys in the same "%d " format as the traverse methods, encoding
+    // them into a fixed chunk that is handed to the writer whenever it fills up
+    public void writeTo(TraversalOrder order, Writer out) throws IOException {
+        byte[] bytes = new byte[WRITE_CHUNK];
+        char[] chars = new char[WRITE_CHUNK];
+        Cursor cursor = new Cursor(root, order);
+        int length = 0;
+        while (cursor.hasNext()) {
+            if (length > WRITE_CHUNK - MAX_KEY_CHARS) {
+                writeChars(out, bytes, chars, length);
+                length = 0;
+            }
+            length = appendKey(cursor.nextNode().value, bytes, length);
+        }
+        writeChars(out, bytes, chars, length);
+        out.flush();
+    }
+
+    public void writeTo(TraversalOrder order, WritableByteChannel out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_CHUNK);
+        byte[] bytes = buffer.array();
+        Cursor cursor = new Cursor(root, order);
+        int length = 0;
+        while (cursor.hasNext()) {
+            if (length > WRITE_CHUNK - MAX_KEY_CHARS) {
+                writeBytes(out, buffer, length);
+                length = 0;
+            }
+            length = appendKey(cursor.nextNode().value, bytes, length);
+        }
+        writeBytes(out, buffer, length);
+    }
+
+    private static void writeChars(Writer out, byte[] bytes, char[] chars, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) bytes[i];
+        }
+        out.write(chars, 0, length);
+    }
+
+    private static void writeBytes(WritableByteChannel out, ByteBuffer buffer, int length) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    // Writes the decimal digits of the key followed by a space, returns the new length
+    private static int appendKey(int value, byte[] buf, int pos) {
+        long v = value; // long so that -Integer.MIN_VALUE does not overflow
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) digits++;
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        pos += digits;
+        buf[pos++] = ' ';
+        return pos;
+    }
+
+    // Remembers the path to the last key it visited, with the open key interval
+    // each path node covers. The next operation climbs only until it reaches a
+    // subtree whose interval contains the new key and descends from there, so
+    // for a key d positions away from the previous one the search costs
+    // O(log d) instead of O(log n); nearly sorted input is found, inserted and
+    // removed almost without descents. After an insert or remove the path is
+    // cut at the highest rotation, keeping the finger close by. Any change made
+    // outside the finger (tree methods or another finger) sends it back to the
+    // root once. Rebalancing stops at the first ancestor whose height holds,
+    // which for an insert is O(1) amortized; the ancestors above only get their
+    // subtree size adjusted, and those are the nodes the finger keeps in cache.
+    public final class Finger {
+        private final Node[] path;
+        private final long[] low;
+        private final long[] high;
+        private int depth;
+        private int expectedModCount;
+
+        private Finger() {
+            path = new Node[MAX_PATH];
+            low = new long[MAX_PATH];
+            high = new long[MAX_PATH];
+            depth = 0;
+            expectedModCount = modCount;
+        }
+
+        public Node find(int value) {
+            return seek(value);
+        }
+
+        public boolean contains(int value) {
+            return seek(value) != null;
+        }
+
+        public boolean insert(int value) {
+            rotationsCount = 0;
+            if (seek(value) != null) return false;
+            depth = attach(path, depth, value, false);
+            expectedModCount = modCount;
+            return true;
+        }
+
+        public boolean remove(int value) {
+            rotationsCount = 0;
+            Node node = seek(value);
+            if (node == null) return false;
+            // seek() left the node on top of the path, detach() wants its ancestors
+            depth = detach(path, depth - 1, node, false);
+            expectedModCount = modCount;
+            return true;
+        }
+
+        // Leaves the search path for value in path[0, depth), ending with the
+        // node holding value (returned) or with the parent of where it would go
+        private Node seek(int value) {
+            if (expectedModCount != modCount) {
+                depth = 0;
+                expectedModCount = modCount;
+            }
+            while (depth > 0 && (value <= low[depth - 1] || value >= high[depth - 1])) {
+                depth--;
+            }
+
+            Node node;
+            long lo, hi;
+            if (depth == 0) {
+                node = root;
+                lo = Long.MIN_VALUE;
+                hi = Long.MAX_VALUE;
+            } else {
+                depth--;
+                node = path[depth];
+                lo = low[depth];
+                hi = high[depth];
+            }
+            while (node != null) {
+                path[depth] = node;
+                low[depth] = lo;
+                high[depth] = hi;
+                depth++;
+                if (value == node.value) return node;
+                if (value < node.value) {
+                    hi = node.value;
+                    node = node.left;
+                } else {
+                    lo = node.value;
+                    node = node.right;
+                }
+            }
+            return null;
+        }
+    }
+
+    // Iterative traversal keeping the pending ancestors on an explicit stack,
+    // whose depth is bounded by the height of the tree
+    static final class Cursor implements PrimitiveIterator.OfInt {
+        private final Node[] stack = new Node[MAX_PATH];
+        private final TraversalOrder order;
+        private int depth;
+
+        Cursor(Node root, TraversalOrder order) {
+            this.order = order;
+            depth = 0;
+            switch (order) {
+                case IN_ORDER -> pushLeftSpine(root);
+                case PRE_ORDER -> {
+                    if (root != null) stack[depth++] = root;
+                }
+                case POST_ORDER -> pushFirstLeaf(root);
+            }
+        }
+
+        private void pushLeftSpine(Node node) {
+            while (node != null) {
+                stack[depth++] = node;
+                node = node.left;
+            }
+        }
+
+        // Descends to the first node visited in post-order below the given one
+        private void pushFirstLeaf(Node node) {
+            while (node != null) {
+                stack[depth++] = node;
+                node = node.left != null ? node.left : node.right;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        public int nextInt() {
+            return nextNode().value;
+        }
+
+        Node nextNode() {
+            if (depth == 0) throw new NoSuchElementException();
+            Node node = stack[--depth];
+            stack[depth] = null;
+            switch (order) {
+                case IN_ORDER -> pushLeftSpine(node.right);
+                case PRE_ORDER -> {
+                    if (node.right != null) stack[depth++] = node.right;
+                    if (node.left != null) stack[depth++] = node.left;
+                }
+                case POST_ORDER -> {
+                    if (depth > 0) {
+                        Node parent = stack[depth - 1];
+                        if (parent.left == node) pushFirstLeaf(parent.right);
+                    }
+                }
+            }
+            return node;
+        }
+    }
+
+    protected static class Node implements TreeNode {
+        private int value;
+        private int height;
+        // Number of nodes in the subtree rooted here
+        private int size;
+        // Epoch of the tree allowed to modify this node in place
+        private final int epoch;
         private Node left;
         private Node right;
 
-        public Node(Integer value) {
+        private Node(int value, int epoch) {
             this.value = value;
+            this.epoch = epoch;
             height = 0;
+            size = 1;
             left = right = null;
         }
 
-        public Integer getValue() {
+        private Node copy(int epoch) {
+            Node copy = new Node(value, epoch);
+            copy.height = height;
+            copy.size = size;
+            copy.left = left;
+            copy.right = right;
+            return copy;
+        }
+
+        @Override
+        public int getValue() {
             return value;
         }
 
-        public Integer getHeight() {
+        public int getHeight() {
             return height;
         }
 
+        public int getSize() {
+            return size;
+        }
+
+        @Override
         public Node getLeft() {
             return left;
         }
 
+        @Override
         public Node getRight() {
             return right;
         }
@@ -220,8 +1125,13 @@ public class AVLTree implements Tree<Integer, AVLTree.Node> {
             return node != null ? node.height : -1;
         }
 
-        public static void updateHeight(Node node) {
+        private static int size(Node node) {
+            return node != null ? node.size : 0;
+        }
+
+        public static void update(Node node) {
             node.height = Math.max(height(node.left), height(node.right)) + 1;
+            node.size = size(node.left) + size(node.right) + 1;
         }
 
         public static int balanceFactor(Node node) {
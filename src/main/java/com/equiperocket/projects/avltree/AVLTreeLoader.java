@@ -0,0 +1,248 @@
+package com.equiperocket.projects.avltree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+// Builds an AVLTree from a file of int keys, either raw little-endian int32 or
+// text with one key per line (any spaces, tabs or line breaks separate keys).
+// The file is split into chunks on record boundaries, every chunk is memory
+// mapped and parsed by its own fork/join task, and the keys are then sorted,
+// deduplicated and handed to AVLTree.bulkLoad, which builds the tree in O(n)
+// without a single insert or rotation.
+//
+// Peak memory is about three int arrays of the key count on top of the tree
+// itself (40 bytes per node with compressed oops).
+public final class AVLTreeLoader {
+
+    public enum Format { BINARY, TEXT }
+
+    // Chunks are at least this big, so small files are parsed by one task
+    private static final long MIN_CHUNK = 1 << 20;
+    // A single mapping cannot exceed 2 GiB
+    private static final long MAX_CHUNK = 1 << 30;
+    // Bytes sniffed by detect()
+    private static final int SAMPLE = 4096;
+
+    private AVLTreeLoader() {
+    }
+
+    public record Result(AVLTree tree, Format format, long keysRead, long parseNanos, long sortNanos,
+                         long buildNanos) {
+
+        public long totalNanos() {
+            return parseNanos + sortNanos + buildNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Loaded %d keys (%d distinct, %s) in %d ms: parse %d ms, sort %d ms, build %d ms",
+                    keysRead, tree.size(), format.name().toLowerCase(Locale.ROOT), totalNanos() / 1_000_000,
+                    parseNanos / 1_000_000, sortNanos / 1_000_000, buildNanos / 1_000_000);
+        }
+    }
+
+    public static Result load(Path file) throws IOException {
+        return load(file, detect(file));
+    }
+
+    public static Result load(Path file, Format format) throws IOException {
+        long start = System.nanoTime();
+        int[] keys;
+        try (FileChannel channel = FileChannel.open(file)) {
+            long length = channel.size();
+            if (format == Format.BINARY && length % Integer.BYTES != 0) {
+                throw new RuntimeException(String.format("Binary file %s has %d bytes, not a multiple of 4!", file, length));
+            }
+            keys = parse(channel, file, format, chunkBounds(channel, format, length));
+        }
+        long parsed = System.nanoTime();
+
+        Arrays.parallelSort(keys);
+        int count = dedupe(keys);
+        int[] distinct = count == keys.length ? keys : Arrays.copyOf(keys, count);
+        long keysRead = keys.length;
+        keys = null; // Let the copy with duplicates go before the nodes are allocated
+        long sorted = System.nanoTime();
+
+        AVLTree tree = new AVLTree();
+        tree.bulkLoad(distinct);
+        long built = System.nanoTime();
+
+        return new Result(tree, format, keysRead, parsed - start, sorted - parsed, built - sorted);
+    }
+
+    // Text if the first bytes are only digits, signs and whitespace, or if the
+    // length cannot hold whole int32 records; binary otherwise
+    public static Format detect(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            if (channel.size() % Integer.BYTES != 0) return Format.TEXT;
+            ByteBuffer sample = ByteBuffer.allocate((int) Math.min(SAMPLE, channel.size()));
+            while (sample.hasRemaining() && channel.read(sample, sample.position()) > 0) {
+                // Keep reading until the sample is full
+            }
+            for (int i = 0; i < sample.position(); i++) {
+                byte b = sample.get(i);
+                if ((b < '0' || b > '9') && b != '-' && b != '+' && !isSeparator(b)) return Format.BINARY;
+            }
+            return Format.TEXT;
+        }
+    }
+
+    private static boolean isSeparator(int b) {
+        return b == '\n' || b == '\r' || b == ' ' || b == '\t';
+    }
+
+    // Start offsets of the chunks plus the file length. Binary chunks are
+    // whole records; text chunks end right after a line break.
+    private static long[] chunkBounds(FileChannel channel, Format format, long length) throws IOException {
+        int tasks = 4 * Runtime.getRuntime().availableProcessors();
+        long chunk = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, (length + tasks - 1) / tasks));
+        chunk -= chunk % Integer.BYTES;
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long position = 0;
+        ByteBuffer probe = ByteBuffer.allocate(256);
+        while (length - position > chunk) {
+            position += chunk;
+            if (format == Format.TEXT) position = nextLineStart(channel, probe, position, length);
+            if (position >= length) break;
+            bounds.add(position);
+        }
+        bounds.add(length);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long nextLineStart(FileChannel channel, ByteBuffer probe, long position, long length)
+            throws IOException {
+        while (position < length) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) return length;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') return position + i + 1;
+            }
+            position += read;
+        }
+        return length;
+    }
+
+    private static int[] parse(FileChannel channel, Path file, Format format, long[] bounds) throws IOException {
+        List<ChunkTask> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            tasks.add(new ChunkTask(channel, file, format, bounds[i], bounds[i + 1]));
+        }
+        try {
+            ForkJoinTask.invokeAll(tasks);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long total = 0;
+        for (ChunkTask task : tasks) total += task.count;
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new RuntimeException(String.format("File %s holds more than %d keys!", file, Integer.MAX_VALUE - 8));
+        }
+        int[] keys = new int[(int) total];
+        int offset = 0;
+        for (ChunkTask task : tasks) {
+            System.arraycopy(task.join(), 0, keys, offset, task.count);
+            offset += task.count;
+        }
+        return keys;
+    }
+
+    // Compacts a sorted array in place and returns the number of distinct keys
+    private static int dedupe(int[] sorted) {
+        if (sorted.length == 0) return 0;
+        int count = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[count - 1]) sorted[count++] = sorted[i];
+        }
+        return count;
+    }
+
+    @SuppressWarnings("serial") // Holds an open FileChannel; only run by the fork/join pool, never serialized
+    private static final class ChunkTask extends RecursiveTask<int[]> {
+        private final FileChannel channel;
+        private final Path file;
+        private final Format format;
+        private final long start;
+        private final long end;
+        private int count;
+
+        private ChunkTask(FileChannel channel, Path file, Format format, long start, long end) {
+            this.channel = channel;
+            this.file = file;
+            this.format = format;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected int[] compute() {
+            try {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                return format == Format.BINARY ? parseBinary(buffer) : parseText(buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private int[] parseBinary(MappedByteBuffer buffer) {
+            int[] keys = new int[(int) ((end - start) / Integer.BYTES)];
+            buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(keys);
+            count = keys.length;
+            return keys;
+        }
+
+        private int[] parseText(MappedByteBuffer buffer) {
+            // Keys take at least two bytes with their separator; start lower and grow
+            int[] keys = new int[(int) Math.min(Integer.MAX_VALUE - 8, (end - start) / 8 + 16)];
+            int n = 0;
+            int limit = buffer.limit();
+            int i = 0;
+            while (i < limit) {
+                int b = buffer.get(i);
+                if (isSeparator(b)) {
+                    i++;
+                    continue;
+                }
+                int keyStart = i;
+                boolean negative = b == '-';
+                if (negative || b == '+') i++;
+                long value = 0;
+                int digits = 0;
+                while (i < limit && (b = buffer.get(i)) >= '0' && b <= '9') {
+                    value = value * 10 + (b - '0');
+                    if (value > (long) Integer.MAX_VALUE + 1) throw invalidKey(keyStart);
+                    digits++;
+                    i++;
+                }
+                if (digits == 0 || (i < limit && !isSeparator(buffer.get(i)))) throw invalidKey(keyStart);
+                value = negative ? -value : value;
+                if (value > Integer.MAX_VALUE) throw invalidKey(keyStart);
+
+                if (n == keys.length) keys = Arrays.copyOf(keys, (int) Math.min(Integer.MAX_VALUE - 8, 2L * n));
+                keys[n++] = (int) value;
+            }
+            count = n;
+            return keys;
+        }
+
+        private RuntimeException invalidKey(int offset) {
+            return new RuntimeException(String.format("Invalid key at byte %d of %s!", start + offset, file));
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.equiperocket.projects.avltree;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hot-path counters for an AVLTree, attached with AVLTree.setMetrics(). A tree
+// without metrics pays a single null check per operation. Counters are
+// LongAdders and histograms are AtomicLongArrays, so one instance may be shared
+// by several trees or threads (e.g. the readers of a ConcurrentAVLTree).
+//
+// The numbers can be polled with snapshot(), or emitted every second as the JFR
+// event "com.equiperocket.avltree.Metrics" after enableJfrEvents(). Long
+// descents or many double rotations point at adversarial key patterns.
+public final class AVLTreeMetrics implements AutoCloseable {
+
+    // Every path is at most 64 nodes long (see AVLTree.MAX_PATH)
+    private static final int BUCKETS = 65;
+
+    private final String name;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder insertions = new LongAdder();
+    private final LongAdder removals = new LongAdder();
+    private final LongAdder singleRotations = new LongAdder();
+    private final LongAdder doubleRotations = new LongAdder();
+    private final AtomicLongArray lookupComparisons = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray descentDepth = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray removeNodesTouched = new AtomicLongArray(BUCKETS);
+    private Runnable jfrHook;
+
+    public AVLTreeMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // ---- Recording, called by AVLTree ----
+
+    void recordLookup(int comparisons) {
+        lookups.increment();
+        lookupComparisons.incrementAndGet(Math.min(comparisons, BUCKETS - 1));
+    }
+
+    // Insertions and removals count only the calls that changed the tree; a
+    // duplicate insert or the removal of a missing key is not recorded
+    void recordInsert(int depth) {
+        insertions.increment();
+        descentDepth.incrementAndGet(Math.min(depth, BUCKETS - 1));
+    }
+
+    // The depth of the removed key, and the nodes on the path down to the one
+    // actually unlinked (deeper when a successor had to be found)
+    void recordRemove(int depth, int touched) {
+        removals.increment();
+        descentDepth.incrementAndGet(Math.min(depth, BUCKETS - 1));
+        removeNodesTouched.incrementAndGet(Math.min(touched, BUCKETS - 1));
+    }
+
+    void recordRotation(boolean isDouble) {
+        (isDouble ? doubleRotations : singleRotations).increment();
+    }
+
+    // ---- Polling ----
+
+    // Counts of how many operations took 0, 1, 2, ... comparisons/nodes; the
+    // last bucket also holds everything larger
+    public record Distribution(long[] counts) {
+
+        public long count() {
+            long total = 0;
+            for (long c : counts) total += c;
+            return total;
+        }
+
+        public double mean() {
+            long total = 0, weighted = 0;
+            for (int i = 0; i < counts.length; i++) {
+                total += counts[i];
+                weighted += i * counts[i];
+            }
+            return total == 0 ? 0 : (double) weighted / total;
+        }
+
+        public int max() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0) return i;
+            }
+            return 0;
+        }
+
+        // Smallest value that at least a q fraction of the operations did not exceed
+        public int percentile(double q) {
+            long rank = (long) Math.ceil(q * count());
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) return i;
+            }
+            return 0;
+        }
+    }
+
+    public record Snapshot(long lookups, long insertions, long removals,
+                           long singleRotations, long doubleRotations,
+                           Distribution lookupComparisons, Distribution descentDepth,
+                           Distribution removeNodesTouched) {
+    }
+
+    // Not atomic across counters: values recorded meanwhile may be partly included
+    public Snapshot snapshot() {
+        return new Snapshot(lookups.sum(), insertions.sum(), removals.sum(),
+                singleRotations.sum(), doubleRotations.sum(),
+                distribution(lookupComparisons), distribution(descentDepth),
+                distribution(removeNodesTouched));
+    }
+
+    private static Distribution distribution(AtomicLongArray histogram) {
+        long[] counts = new long[histogram.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = histogram.get(i);
+        }
+        return new Distribution(counts);
+    }
+
+    public void reset() {
+        lookups.reset();
+        insertions.reset();
+        removals.reset();
+        singleRotations.reset();
+        doubleRotations.reset();
+        for (int i = 0; i < BUCKETS; i++) {
+            lookupComparisons.set(i, 0);
+            descentDepth.set(i, 0);
+            removeNodesTouched.set(i, 0);
+        }
+    }
+
+    // ---- JFR ----
+
+    public synchronized void enableJfrEvents() {
+        if (jfrHook != null) return;
+        jfrHook = this::emitEvent;
+        FlightRecorder.addPeriodicEvent(MetricsEvent.class, jfrHook);
+    }
+
+    public synchronized void disableJfrEvents() {
+        if (jfrHook == null) return;
+        FlightRecorder.removePeriodicEvent(jfrHook);
+        jfrHook = null;
+    }
+
+    @Override
+    public void close() {
+        disableJfrEvents();
+    }
+
+    private void emitEvent() {
+        MetricsEvent event = new MetricsEvent();
+        if (!event.isEnabled()) return;
+        Snapshot snapshot = snapshot();
+        event.tree = name;
+        event.lookups = snapshot.lookups();
+        event.insertions = snapshot.insertions();
+        event.removals = snapshot.removals();
+        event.singleRotations = snapshot.singleRotations();
+        event.doubleRotations = snapshot.doubleRotations();
+        event.meanComparisons = snapshot.lookupComparisons().mean();
+        event.maxComparisons = snapshot.lookupComparisons().max();
+        event.meanDescentDepth = snapshot.descentDepth().mean();
+        event.maxDescentDepth = snapshot.descentDepth().max();
+        event.meanRemoveNodesTouched = snapshot.removeNodesTouched().mean();
+        event.commit();
+    }
+
+    @Name("com.equiperocket.avltree.Metrics")
+    @Label("AVL Tree Metrics")
+    @Category("AVL Tree")
+    @Description("Cumulative operation counters of an AVLTree")
+    @Period("1 s")
+    @StackTrace(false)
+    static final class MetricsEvent extends Event {
+        @Label("Tree")
+        String tree;
+        @Label("Lookups")
+        long lookups;
+        @Label("Insertions")
+        long insertions;
+        @Label("Removals")
+        long removals;
+        @Label("Single Rotations")
+        long singleRotations;
+        @Label("Double Rotations")
+        long doubleRotations;
+        @Label("Mean Comparisons per Lookup")
+        double meanComparisons;
+        @Label("Max Comparisons per Lookup")
+        int maxComparisons;
+        @Label("Mean Descent Depth")
+        double meanDescentDepth;
+        @Label("Max Descent Depth")
+        int maxDescentDepth;
+        @Label("Mean Nodes Touched per Remove")
+        double meanRemoveNodesTouched;
+    }
+}
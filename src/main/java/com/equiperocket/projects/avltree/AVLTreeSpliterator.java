@@ -0,0 +1,133 @@
+package com.equiperocket.projects.avltree;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+// In-order spliterator that splits along subtree boundaries. Its remaining
+// elements are always "head" (a single node, optional) followed by the whole
+// in-order sequence of "subtree", so a split hands out head plus the left
+// subtree and keeps the subtree root plus the right subtree. Subtree sizes
+// make every part exactly sized, and the AVL balance keeps the halves close.
+// The tree must not be modified while a stream over it is running.
+abstract class AVLTreeSpliterator {
+
+    private AVLTree.Node head;
+    private AVLTree.Node subtree;
+    private AVLTree.Cursor cursor; // created on the first visit inside subtree
+    private long remaining;
+
+    AVLTreeSpliterator(AVLTree.Node head, AVLTree.Node subtree) {
+        this.head = head;
+        this.subtree = subtree;
+        remaining = (head != null ? 1 : 0) + (subtree != null ? subtree.getSize() : 0);
+    }
+
+    AVLTree.Node advance() {
+        AVLTree.Node node;
+        if (head != null) {
+            node = head;
+            head = null;
+        } else {
+            if (cursor == null) cursor = new AVLTree.Cursor(subtree, TraversalOrder.IN_ORDER);
+            if (!cursor.hasNext()) return null;
+            node = cursor.nextNode();
+        }
+        remaining--;
+        return node;
+    }
+
+    // Detaches the first part of the remaining sequence as {head, subtree},
+    // or returns null when nothing can be split off anymore
+    AVLTree.Node[] splitPrefix() {
+        if (cursor != null || subtree == null) return null;
+        while (head == null && subtree.getLeft() == null) {
+            head = subtree;
+            subtree = subtree.getRight();
+            if (subtree == null) return null;
+        }
+        AVLTree.Node[] prefix = {head, subtree.getLeft()};
+        long prefixSize = (head != null ? 1 : 0) + (prefix[1] != null ? prefix[1].getSize() : 0);
+        head = subtree;
+        subtree = subtree.getRight();
+        remaining -= prefixSize;
+        return prefix;
+    }
+
+    public long estimateSize() {
+        return remaining;
+    }
+
+    static final class OfNode extends AVLTreeSpliterator implements Spliterator<AVLTree.Node> {
+
+        OfNode(AVLTree.Node head, AVLTree.Node subtree) {
+            super(head, subtree);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super AVLTree.Node> action) {
+            AVLTree.Node node = advance();
+            if (node == null) return false;
+            action.accept(node);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super AVLTree.Node> action) {
+            for (AVLTree.Node node = advance(); node != null; node = advance()) {
+                action.accept(node);
+            }
+        }
+
+        @Override
+        public Spliterator<AVLTree.Node> trySplit() {
+            AVLTree.Node[] prefix = splitPrefix();
+            return prefix == null ? null : new OfNode(prefix[0], prefix[1]);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+        }
+    }
+
+    static final class OfKey extends AVLTreeSpliterator implements Spliterator.OfInt {
+
+        OfKey(AVLTree.Node head, AVLTree.Node subtree) {
+            super(head, subtree);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            AVLTree.Node node = advance();
+            if (node == null) return false;
+            action.accept(node.getValue());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            for (AVLTree.Node node = advance(); node != null; node = advance()) {
+                action.accept(node.getValue());
+            }
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            AVLTree.Node[] prefix = splitPrefix();
+            return prefix == null ? null : new OfKey(prefix[0], prefix[1]);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SORTED | NONNULL | SIZED | SUBSIZED;
+        }
+
+        // Keys are sorted by their natural order
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null;
+        }
+    }
+}
@@ -7,11 +7,19 @@ import javax.swing.Timer;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.*;
-import java.util.Stack;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 public class AVLTreeVisualizerGUI {
-    private final AVLTree tree;
+    private BinaryTree<?> tree;
+    private final String engine;
     private JFrame frame;
     private TreePanel treePanel;
     private JTextField inputField;
@@ -21,12 +29,45 @@ public class AVLTreeVisualizerGUI {
     private int lastAccessed = Integer.MIN_VALUE;
     private JPanel headerPanel;
     private String currentTheme = "light";
-    private final Stack<Runnable> undoStack = new Stack<>();
-
-    public AVLTreeVisualizerGUI(AVLTree tree) {
+    // Versions of the tree before/after each operation; undo and redo swap the
+    // live tree with one of them. At most MAX_UNDO are kept, dropping the
+    // oldest. AVLTree snapshots are O(1) and share every unchanged subtree
+    // (though not after a rebuilding bulk insert); the other engines copy every
+    // node, so above MAX_COPIED_UNDO_NODES their history is dropped instead.
+    private final Deque<BinaryTree<?>> undoStack = new ArrayDeque<>();
+    private final Deque<BinaryTree<?>> redoStack = new ArrayDeque<>();
+    // Tree operations and layouts run here so the event thread never waits on
+    // a large tree. Only this thread touches the tree and the undo/redo stacks;
+    // results reach the UI through SwingUtilities.invokeLater.
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "avltree-visualizer-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean layoutQueued = new AtomicBoolean(false);
+
+    // Bulk operations: the worker counts finished keys, a 16 ms timer on the
+    // event thread shows them, so the bar repaints at most once per frame
+    private static final int MAX_BULK_KEYS = 10_000_000;
+    private static final int MAX_UNDO = 50;
+    private static final int MAX_COPIED_UNDO_NODES = 100_000;
+    private static final String[] BULK_OPERATIONS = {
+            "Inserir intervalo", "Inserir aleatórios", "Inserir Zipf", "Carregar arquivo", "Remover intervalo"
+    };
+    private static final Pattern KEY_SEPARATORS = Pattern.compile("[\\s,;]+");
+    private final AtomicInteger bulkDone = new AtomicInteger();
+    private final AtomicInteger bulkTotal = new AtomicInteger();
+    private int bulksRunning = 0;
+    private JProgressBar progressBar;
+    private Timer progressTimer;
+
+    // Works with any engine of TreeFactory
+    public AVLTreeVisualizerGUI(BinaryTree<?> tree) {
         this.tree = tree;
+        this.engine = TreeFactory.engineOf(tree);
         setTheme(currentTheme); // padrão: light
         initializeUI();
+        update();
     }
 
     private void setTheme(String theme) {
@@ -45,7 +86,7 @@ public class AVLTreeVisualizerGUI {
     }
 
     private void initializeUI() {
-        frame = new JFrame("AVL Tree Visualization 🚀");
+        frame = new JFrame("AVL Tree Visualization 🚀 [" + engine + "]");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setMinimumSize(new Dimension(1040, 650));
         frame.setLayout(new BorderLayout());
@@ -117,6 +158,11 @@ public class AVLTreeVisualizerGUI {
         undoBtn.setPreferredSize(new Dimension(130, 40));
         buttonPanel.add(undoBtn);
 
+        JButton redoBtn = createButton("↪ Refazer", btnFont, accentColor, e -> redoOperation());
+        redoBtn.setToolTipText("Refazer operação desfeita");
+        redoBtn.setPreferredSize(new Dimension(130, 40));
+        buttonPanel.add(redoBtn);
+
         JButton inOrderBtn = createButton("In Order", btnFont, accentColor, e -> printInOrder());
         inOrderBtn.setToolTipText("Percurso In-Order (LNR)");
         inOrderBtn.setPreferredSize(new Dimension(150, 40));
@@ -137,6 +183,11 @@ public class AVLTreeVisualizerGUI {
         resetBtn.setPreferredSize(new Dimension(120, 40));
         buttonPanel.add(resetBtn);
 
+        JButton bulkBtn = createButton("📦 Em massa", btnFont, accentColor, e -> showBulkDialog());
+        bulkBtn.setToolTipText("Inserir/remover intervalos, chaves aleatórias ou de arquivo");
+        bulkBtn.setPreferredSize(new Dimension(150, 40));
+        buttonPanel.add(bulkBtn);
+
         outputArea = new JTextArea(7, 85);
         outputArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 15));
         outputArea.setEditable(false);
@@ -152,6 +203,16 @@ public class AVLTreeVisualizerGUI {
         bottomPanel.add(buttonPanel, BorderLayout.NORTH);
         bottomPanel.add(scrollPane, BorderLayout.CENTER);
 
+        progressBar = new JProgressBar();
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        bottomPanel.add(progressBar, BorderLayout.SOUTH);
+        progressTimer = new Timer(16, e -> {
+            int total = bulkTotal.get();
+            progressBar.setMaximum(Math.max(total, 1));
+            progressBar.setValue(bulkDone.get());
+        });
+
         frame.add(bottomPanel, BorderLayout.SOUTH);
 
         inputField.addActionListener(e -> insertValue());
@@ -199,7 +260,9 @@ public class AVLTreeVisualizerGUI {
                         🔍 Buscar: Busca visual o valor na árvore.
                         ➖ Remover: Remove valor informado da árvore.
                         ↩ Desfazer: Volta a última operação (inserção ou remoção)
+                        ↪ Refazer: Reaplica a última operação desfeita
                         Resetar: Limpa toda a árvore.
+                        📦 Em massa: Insere/remove intervalos, chaves aleatórias, Zipf ou de arquivo.
                         O nó recentemente alterado/buscado ficará destacado.
                         
                         Atalhos: ENTER=Inserir.
@@ -216,24 +279,42 @@ public class AVLTreeVisualizerGUI {
             if (ok != JOptionPane.OK_OPTION) return;
         }
         frame.dispose();
-        new AVLTreeVisualizerGUI(new AVLTree());
+        worker.shutdownNow();
+        new AVLTreeVisualizerGUI(TreeFactory.create(engine));
+    }
+
+    // Hands text to the output area from the worker
+    private void appendOutput(String text) {
+        SwingUtilities.invokeLater(() -> {
+            outputArea.append(text + "\n");
+            Toolkit.getDefaultToolkit().beep();
+        });
     }
 
     private void insertValue() {
         String text = inputField.getText().trim();
         try {
             int value = Integer.parseInt(text);
-            String rotations = tree.insert(value);
-            outputArea.append("Inserido: " + value + (rotations.isEmpty() ? "" : " [" + rotations.trim() + "]") + "\n");
             inputField.setText("");
             lastAccessed = value;
-            undoStack.push(() -> { try { tree.remove(value); } catch (Exception ignored) {} });
-            Toolkit.getDefaultToolkit().beep();
-            update();
+            worker.execute(() -> {
+                BinaryTree<?> before = undoPoint();
+                String rotations;
+                try {
+                    rotations = tree.insert(value);
+                } catch (RuntimeException e) {
+                    SwingUtilities.invokeLater(() -> {
+                        inputField.setText(text);
+                        showInputError("Valor já está na árvore.");
+                    });
+                    return;
+                }
+                pushUndo(before);
+                appendOutput("Inserido: " + value + (rotations.isEmpty() ? "" : " [" + rotations.trim() + "]"));
+                update();
+            });
         } catch (NumberFormatException e) {
             showInputError("Entrada inválida! Digite um número inteiro.");
-        } catch (RuntimeException e) {
-            showInputError("Valor já está na árvore.");
         }
     }
 
@@ -241,16 +322,17 @@ public class AVLTreeVisualizerGUI {
         String text = inputField.getText().trim();
         try {
             int value = Integer.parseInt(text);
-            AVLTree.Node node = tree.find(value);
-            lastAccessed = value;
-            if (node != null) {
-                outputArea.append("Encontrado: " + node + "\n");
-            } else {
-                outputArea.append("Valor " + value + " não encontrado.\n");
-            }
-            Toolkit.getDefaultToolkit().beep();
             inputField.setText("");
-            update();
+            lastAccessed = value;
+            worker.execute(() -> {
+                TreeNode node = tree.find(value);
+                appendOutput(node != null ? "Encontrado: " + node : "Valor " + value + " não encontrado.");
+                // The tree did not change, so the current layout is kept
+                SwingUtilities.invokeLater(() -> {
+                    treePanel.fadeIn();
+                    treePanel.centerTree();
+                });
+            });
         } catch (NumberFormatException e) {
             showInputError("Entrada inválida! Digite um número inteiro.");
         }
@@ -260,52 +342,279 @@ public class AVLTreeVisualizerGUI {
         String text = inputField.getText().trim();
         try {
             int value = Integer.parseInt(text);
-            String rotations = tree.remove(value);
-            outputArea.append("Removido: " + value + (rotations.isEmpty() ? "" : " [" + rotations.trim() + "]") + "\n");
             inputField.setText("");
             lastAccessed = value;
-            undoStack.push(() -> { try { tree.insert(value); } catch (Exception ignored) {} });
-            Toolkit.getDefaultToolkit().beep();
-            update();
+            worker.execute(() -> {
+                BinaryTree<?> before = undoPoint();
+                String rotations;
+                try {
+                    rotations = tree.remove(value);
+                } catch (RuntimeException e) {
+                    SwingUtilities.invokeLater(() -> {
+                        inputField.setText(text);
+                        showInputError("Valor não encontrado na árvore.");
+                    });
+                    return;
+                }
+                pushUndo(before);
+                appendOutput("Removido: " + value + (rotations.isEmpty() ? "" : " [" + rotations.trim() + "]"));
+                update();
+            });
         } catch (NumberFormatException e) {
             showInputError("Entrada inválida! Digite um número inteiro.");
-        } catch (RuntimeException e) {
-            showInputError("Valor não encontrado na árvore.");
         }
     }
 
     private void printInOrder() {
-        outputArea.append("In-Order: " + tree.traverseInOrder() + "\n");
-        Toolkit.getDefaultToolkit().beep();
         inputField.setText("");
+        worker.execute(() -> appendOutput("In-Order: " + tree.traverseInOrder()));
     }
 
     private void printPreOrder() {
-        outputArea.append("Pre-Order: " + tree.traversePreOrder() + "\n");
-        Toolkit.getDefaultToolkit().beep();
         inputField.setText("");
+        worker.execute(() -> appendOutput("Pre-Order: " + tree.traversePreOrder()));
     }
 
     private void printPostOrder() {
-        outputArea.append("Post-Order: " + tree.traversePostOrder() + "\n");
-        Toolkit.getDefaultToolkit().beep();
         inputField.setText("");
+        worker.execute(() -> appendOutput("Post-Order: " + tree.traversePostOrder()));
     }
 
+    // Queues a new layout of the tree on the worker. Operations queued before
+    // it runs share it, so a burst of changes is laid out once.
     private void update() {
-        treePanel.fadeIn();
-        treePanel.centerTree(); // center the visualization always on update
+        if (!layoutQueued.compareAndSet(false, true)) return;
+        worker.execute(() -> {
+            layoutQueued.set(false);
+            TreeLayout layout = TreeLayout.of(tree.getRoot(), tree.size());
+            SwingUtilities.invokeLater(() -> treePanel.showLayout(layout));
+        });
     }
 
-    private void undoOperation() {
-        if (!undoStack.isEmpty()) {
-            undoStack.pop().run();
-            outputArea.append("Desfazer: última operação revertida.\n");
-            Toolkit.getDefaultToolkit().beep();
+    private void showBulkDialog() {
+        JComboBox<String> operation = new JComboBox<>(BULK_OPERATIONS);
+        JTextField fromField = new JTextField("1", 10);
+        JTextField toField = new JTextField("100000", 10);
+        JTextField countField = new JTextField("100000", 10);
+        JPanel panel = new JPanel(new GridLayout(0, 2, 8, 6));
+        panel.add(new JLabel("Operação:"));
+        panel.add(operation);
+        panel.add(new JLabel("Início:"));
+        panel.add(fromField);
+        panel.add(new JLabel("Fim:"));
+        panel.add(toField);
+        panel.add(new JLabel("Quantidade (aleatórios/Zipf):"));
+        panel.add(countField);
+
+        int ok = JOptionPane.showConfirmDialog(frame, panel, "Operações em massa",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (ok != JOptionPane.OK_OPTION) return;
+
+        try {
+            int low = Integer.parseInt(fromField.getText().trim());
+            int high = Integer.parseInt(toField.getText().trim());
+            int count = Integer.parseInt(countField.getText().trim());
+            long span = (long) high - low + 1;
+            if (span < 1 || count < 1) {
+                showInputError("Intervalo vazio! O início deve ser menor ou igual ao fim.");
+                return;
+            }
+            switch (operation.getSelectedIndex()) {
+                case 0 -> {
+                    if (span > MAX_BULK_KEYS) {
+                        showInputError("Intervalo grande demais! Máximo de " + MAX_BULK_KEYS + " chaves.");
+                        return;
+                    }
+                    runBulk("Inserir intervalo", () -> insertKeys(rangeKeys(low, (int) span)));
+                }
+                case 1 -> runBulk("Inserir aleatórios", () -> insertKeys(
+                        new SplittableRandom().longs(Math.min(count, MAX_BULK_KEYS), 0, span)
+                                .mapToInt(offset -> (int) (low + offset)).toArray()));
+                case 2 -> runBulk("Inserir Zipf", () -> insertKeys(zipfianKeys(Math.min(count, MAX_BULK_KEYS), low, span)));
+                case 3 -> loadKeysFromFile();
+                default -> runBulk("Remover intervalo", () -> removeKeys(keysInRange(low, high)));
+            }
+        } catch (NumberFormatException e) {
+            showInputError("Entrada inválida! Digite números inteiros.");
+        }
+    }
+
+    private void loadKeysFromFile() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Arquivo de chaves (inteiros separados por espaço, vírgula ou linha)");
+        if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        runBulk("Carregar " + file.getName(), () -> {
+            String text = Files.readString(file.toPath()).trim();
+            if (text.isEmpty()) return insertKeys(new int[0]);
+            return insertKeys(KEY_SEPARATORS.splitAsStream(text).mapToInt(Integer::parseInt).toArray());
+        });
+    }
+
+    private interface BulkTask {
+        String run() throws IOException;
+    }
+
+    // Runs on the worker as one undo step, with a single beep and one layout
+    // at the end instead of one per key
+    private void runBulk(String name, BulkTask task) {
+        inputField.setText("");
+        bulksRunning++;
+        progressBar.setValue(0);
+        progressBar.setString(name);
+        progressBar.setVisible(true);
+        progressTimer.start();
+        worker.execute(() -> {
+            bulkDone.set(0);
+            bulkTotal.set(0);
+            BinaryTree<?> before = undoPoint();
+            int sizeBefore = tree.size();
+            long start = System.nanoTime();
+            String result;
+            try {
+                result = task.run();
+            } catch (IOException | RuntimeException e) {
+                result = "falhou: " + e.getMessage();
+            }
+            // Bulk tasks only insert or remove, so a change always shows in the size
+            if (tree.size() != sizeBefore) pushUndo(before);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            appendOutput(String.format("%s: %s em %d ms (%d nós)", name, result, millis, tree.size()));
             update();
+            SwingUtilities.invokeLater(() -> {
+                if (--bulksRunning == 0) {
+                    progressTimer.stop();
+                    progressBar.setVisible(false);
+                }
+            });
+        });
+    }
+
+    // ---- Bulk tasks, run on the worker ----
+
+    private String insertKeys(int[] keys) {
+        bulkTotal.set(keys.length);
+        int inserted = 0;
+        if (tree instanceof AVLTree avl) {
+            // Sorted once, then plain descents or a merge and rebuild (see insertAll)
+            inserted = avl.insertAll(keys);
+            bulkDone.set(keys.length);
         } else {
-            outputArea.append("Nada a desfazer.\n");
+            for (int i = 0; i < keys.length; i++) {
+                if (tree.insertKey(keys[i])) inserted++;
+                bulkDone.lazySet(i + 1);
+            }
+        }
+        return String.format("%d inseridos, %d repetidos", inserted, keys.length - inserted);
+    }
+
+    private String removeKeys(int[] keys) {
+        bulkTotal.set(keys.length);
+        int removed = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (tree.removeKey(keys[i])) removed++;
+            bulkDone.lazySet(i + 1);
+        }
+        return String.format("%d removidos", removed);
+    }
+
+    private static int[] rangeKeys(int low, int count) {
+        int[] keys = new int[count];
+        for (int i = 0; i < count; i++) keys[i] = low + i;
+        return keys;
+    }
+
+    // Keys of the tree in [low, high], visiting only the subtrees that overlap it
+    private int[] keysInRange(int low, int high) {
+        int[] keys = new int[16];
+        int count = 0;
+        Deque<TreeNode> stack = new ArrayDeque<>();
+        TreeNode node = tree.getRoot();
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.push(node);
+                node = node.getValue() > low ? node.getLeft() : null;
+            }
+            node = stack.pop();
+            int value = node.getValue();
+            if (value > high) break;
+            if (value >= low) {
+                if (count == keys.length) keys = Arrays.copyOf(keys, count * 2);
+                keys[count++] = value;
+            }
+            node = node.getRight();
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    // Zipfian ranks over [low, low + span): low keys are hot, so the draws
+    // repeat and fewer than count keys are new
+    private static int[] zipfianKeys(int count, int low, long span) {
+        SplittableRandom random = new SplittableRandom();
+        ZipfianGenerator zipfian = new ZipfianGenerator(Math.min(span, MAX_BULK_KEYS));
+        int[] keys = new int[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (int) (low + zipfian.nextRank(random));
+        }
+        return keys;
+    }
+
+    // Copying engines pay O(n) per snapshot, which is only affordable for
+    // trees about the size of a drawing
+    private boolean undoAvailable() {
+        return tree instanceof AVLTree || tree.size() <= MAX_COPIED_UNDO_NODES;
+    }
+
+    // State to return to if the next operation changes the tree, or null if
+    // the tree is too large to copy
+    private BinaryTree<?> undoPoint() {
+        return undoAvailable() ? tree.snapshot() : null;
+    }
+
+    private void pushUndo(BinaryTree<?> before) {
+        if (before == null) {
+            // Older states cannot be reached without this one
+            if (!undoStack.isEmpty() || !redoStack.isEmpty()) {
+                undoStack.clear();
+                redoStack.clear();
+                appendOutput(undoDisabledMessage());
+            }
+            return;
         }
+        undoStack.push(before);
+        if (undoStack.size() > MAX_UNDO) undoStack.removeLast();
+        redoStack.clear();
+    }
+
+    private String undoDisabledMessage() {
+        return String.format("Histórico desativado: árvores %s com mais de %d nós seriam copiadas a cada operação.",
+                engine, MAX_COPIED_UNDO_NODES);
+    }
+
+    private void undoOperation() {
+        worker.execute(() -> {
+            if (!undoStack.isEmpty()) {
+                redoStack.push(tree);
+                tree = undoStack.pop();
+                appendOutput("Desfazer: última operação revertida.");
+                update();
+            } else {
+                appendOutput(undoAvailable() ? "Nada a desfazer." : undoDisabledMessage());
+            }
+        });
+    }
+
+    private void redoOperation() {
+        worker.execute(() -> {
+            if (!redoStack.isEmpty()) {
+                undoStack.push(tree);
+                tree = redoStack.pop();
+                appendOutput("Refazer: operação reaplicada.");
+                update();
+            } else {
+                appendOutput("Nada a refazer.");
+            }
+        });
     }
 
     private void showInputError(String msg) {
@@ -320,12 +629,31 @@ public class AVLTreeVisualizerGUI {
         private static final int NODE_DIAMETER = 50; // Node size
         private static final int VERTICAL_GAP = 100; // Vertical spacing between nodes
         private static final int HORIZONTAL_SPACING = 20; // Horizontal spacing between nodes
+        private static final int COLUMN_WIDTH = NODE_DIAMETER + HORIZONTAL_SPACING;
+        private static final Font NODE_FONT = new Font(Font.MONOSPACED, Font.BOLD, 14);
+        private static final Stroke EDGE_STROKE = new BasicStroke(3f);
+        private static final int PROGRESSIVE_NODES = 4096; // Smaller trees appear at once
+        private static final int REVEAL_STEP_MILLIS = 16; // One level per frame at 60 fps
+        private static final int LEGIBLE_PIXELS = 20; // On-screen node size that still fits a label
+        private static final int GLYPH_PIXELS = 48; // Narrower subtrees collapse when labels don't fit
+        private static final float GLYPH_FONT_PIXELS = 12f;
         private float alpha = 1.0f;
 
         private double zoom = 1.0;
         private int offsetX = 0, offsetY = 0, lastMouseX, lastMouseY;
 
-        private final Map<AVLTree.Node, Point> nodePositions = new HashMap<>(); // Store node positions
+        // Positions of the current tree, built by the worker after each change
+        private TreeLayout layout = TreeLayout.of(null, 0);
+        private int revealedDepth = Integer.MAX_VALUE;
+        private Timer revealTimer;
+        private FontMetrics nodeFontMetrics;
+        private Color edgeColor;
+        private Color glyphColor;
+        private Font glyphFont;
+        private FontMetrics glyphFontMetrics;
+        private double glyphFontZoom;
+        private final int[] glyphXs = new int[4];
+        private final int[] glyphYs = new int[4];
 
         public TreePanel() {
             setBackground(Color.white); // light background as per guidelines
@@ -334,7 +662,7 @@ public class AVLTreeVisualizerGUI {
             addMouseWheelListener(e -> {
                 double scale = e.getPreciseWheelRotation() < 0 ? 1.1 : 0.9;
                 zoom *= scale;
-                zoom = Math.max(zoom, 0.2); // minimum zoom
+                zoom = Math.max(zoom, minimumZoom());
                 repaint();
             });
 
@@ -361,50 +689,62 @@ public class AVLTreeVisualizerGUI {
             });
         }
 
-        private int calculateNodePositions(AVLTree.Node node, int depth, int x) {
-            if (node == null) return x;
-
-            x = calculateNodePositions(node.getLeft(), depth + 1, x);
-
-            int nodeX = x;
-            int nodeY = depth * VERTICAL_GAP;
-            nodePositions.put(node, new Point(nodeX, nodeY));
+        // Swaps in a layout built by the worker; runs on the event thread
+        public void showLayout(TreeLayout layout) {
+            this.layout = layout;
+            fadeIn();
+            centerTree(); // center the visualization always on update
+            reveal();
+        }
 
-            x += NODE_DIAMETER + HORIZONTAL_SPACING;
+        // Large trees appear one level per frame, top first, so the frames
+        // right after a change draw the coarse shape instead of every node
+        private void reveal() {
+            if (revealTimer != null) revealTimer.stop();
+            if (layout.count < PROGRESSIVE_NODES) {
+                revealedDepth = Integer.MAX_VALUE;
+                return;
+            }
+            revealedDepth = 0;
+            revealTimer = new Timer(REVEAL_STEP_MILLIS, e -> {
+                revealedDepth++;
+                repaintLevel(revealedDepth);
+                if (revealedDepth >= layout.maxDepth) revealTimer.stop();
+            });
+            revealTimer.start();
+        }
 
-            x = calculateNodePositions(node.getRight(), depth + 1, x);
+        // Repaints only the band holding a level and the edges from its parents
+        private void repaintLevel(int depth) {
+            int top = (int) Math.floor(offsetY + (depth - 1) * VERTICAL_GAP * zoom);
+            int bottom = (int) Math.ceil(offsetY + (depth * VERTICAL_GAP + NODE_DIAMETER) * zoom);
+            repaint(0, top, getWidth(), bottom - top);
+        }
 
-            return x;
+        // 0.2, or less if that is needed to see the whole tree
+        private double minimumZoom() {
+            int width = getTreeDimensions().width;
+            if (width == 0) return 0.2;
+            return Math.min(0.2, (double) getWidth() / width);
         }
 
         // New method to calculate tree bounding box width and height
         private Dimension getTreeDimensions() {
-            if (nodePositions.isEmpty()) return new Dimension(0, 0);
-            int minX = Integer.MAX_VALUE;
-            int maxX = Integer.MIN_VALUE;
-            int minY = Integer.MAX_VALUE;
-            int maxY = Integer.MIN_VALUE;
-            for (Point p : nodePositions.values()) {
-                minX = Math.min(minX, p.x);
-                maxX = Math.max(maxX, p.x);
-                minY = Math.min(minY, p.y);
-                maxY = Math.max(maxY, p.y);
-            }
+            if (layout.count == 0) return new Dimension(0, 0);
             // Node diameter adds to total width/height
-            int width = maxX - minX + NODE_DIAMETER;
-            int height = maxY - minY + NODE_DIAMETER;
+            int width = (layout.count - 1) * COLUMN_WIDTH + NODE_DIAMETER;
+            int height = layout.maxDepth * VERTICAL_GAP + NODE_DIAMETER;
             return new Dimension(width, height);
         }
 
         // New method to center tree visualization in panel
         public void centerTree() {
-            if (tree.getRoot() == null) {
+            if (layout.count == 0) {
                 offsetX = getWidth() / 2;
                 offsetY = NODE_DIAMETER; // some padding from top
                 repaint();
                 return;
             }
-            calculateNodePositions(tree.getRoot(), 0, 0);
             Dimension treeDim = getTreeDimensions();
             // Center horizontally
             offsetX = (getWidth() - (int)(treeDim.width * zoom)) / 2;
@@ -441,60 +781,184 @@ public class AVLTreeVisualizerGUI {
             g2d.translate(offsetX, offsetY);
             g2d.scale(zoom, zoom);
 
-            nodePositions.clear();
-            if (tree.getRoot() != null) {
-                calculateNodePositions(tree.getRoot(), 0, 0);
-                drawPrecomputedTree(g2d, tree.getRoot());
+            TreeLayout layout = this.layout;
+            if (layout.root >= 0) {
+                if (nodeFontMetrics == null) nodeFontMetrics = g2d.getFontMetrics(NODE_FONT);
+                edgeColor = accentColor.darker();
+                glyphColor = new Color(accentColor.getRed(), accentColor.getGreen(), accentColor.getBlue(), 96);
+                if (glyphFont == null || glyphFontZoom != zoom) {
+                    // Glyph labels keep the same size on screen whatever the zoom
+                    glyphFont = NODE_FONT.deriveFont((float) (GLYPH_FONT_PIXELS / zoom));
+                    glyphFontMetrics = g2d.getFontMetrics(glyphFont);
+                    glyphFontZoom = zoom;
+                }
+                g2d.setFont(NODE_FONT);
+                g2d.setStroke(EDGE_STROKE);
+                // Clip in tree coordinates, widened so partly visible nodes are drawn
+                Rectangle clip = g2d.getClipBounds();
+                if (clip == null) clip = new Rectangle(0, 0, Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2);
+                clip.grow(NODE_DIAMETER, NODE_DIAMETER);
+                boolean legible = NODE_DIAMETER * zoom >= LEGIBLE_PIXELS;
+                drawSubtree(g2d, layout, layout.root, clip, legible);
             }
 
             g2d.dispose();
         }
 
-        private void drawPrecomputedTree(Graphics2D g2d, AVLTree.Node node) {
-            if (node == null) return;
-
-            Point point = nodePositions.get(node);
-            int x = point.x;
-            int y = point.y;
-
-            drawNode(g2d, node, x, y);
-
-            if (node.getLeft() != null) {
-                Point left = nodePositions.get(node.getLeft());
-                drawLine(g2d, x, y, left.x, left.y);
-                drawPrecomputedTree(g2d, node.getLeft());
+        // Skips every subtree whose columns or depth fall outside the clip, so a
+        // frame costs O(visible nodes + height) however large the tree is. When
+        // labels are too small to read, subtrees narrower than GLYPH_PIXELS are
+        // drawn as one glyph, which bounds the work by the pixels on screen.
+        private void drawSubtree(Graphics2D g2d, TreeLayout layout, int i, Rectangle clip, boolean legible) {
+            int y = layout.depth[i] * VERTICAL_GAP;
+            if (y > clip.y + clip.height) return;
+            if ((long) layout.last[i] * COLUMN_WIDTH < clip.x) return;
+            if ((long) layout.first[i] * COLUMN_WIDTH > clip.x + clip.width) return;
+
+            int x = i * COLUMN_WIDTH;
+            int columns = layout.last[i] - layout.first[i] + 1;
+            if (!legible && columns > 1 && columns * COLUMN_WIDTH * zoom < GLYPH_PIXELS) {
+                drawGlyph(g2d, layout, i, x, y);
+                return;
             }
-
-            if (node.getRight() != null) {
-                Point right = nodePositions.get(node.getRight());
-                drawLine(g2d, x, y, right.x, right.y);
-                drawPrecomputedTree(g2d, node.getRight());
+            int left = layout.depth[i] < revealedDepth ? layout.left[i] : -1;
+            int right = layout.depth[i] < revealedDepth ? layout.right[i] : -1;
+            if (left >= 0) {
+                drawLine(g2d, x, y, left * COLUMN_WIDTH, y + VERTICAL_GAP, clip);
+                drawSubtree(g2d, layout, left, clip, legible);
             }
+            if (right >= 0) {
+                drawLine(g2d, x, y, right * COLUMN_WIDTH, y + VERTICAL_GAP, clip);
+                drawSubtree(g2d, layout, right, clip, legible);
+            }
+            if (clip.contains(x, y)) drawNode(g2d, layout, i, x, y, legible);
+        }
+
+        // Trapezoid from the subtree root down to its deepest level, labelled
+        // with the node count and the range of leaf heights below the root
+        private void drawGlyph(Graphics2D g2d, TreeLayout layout, int i, int x, int y) {
+            int left = layout.first[i] * COLUMN_WIDTH - NODE_DIAMETER / 2;
+            int right = layout.last[i] * COLUMN_WIDTH + NODE_DIAMETER / 2;
+            int top = y - NODE_DIAMETER / 2;
+            int bottom = layout.deepest[i] * VERTICAL_GAP + NODE_DIAMETER / 2;
+            glyphXs[0] = x - NODE_DIAMETER / 2;
+            glyphXs[1] = x + NODE_DIAMETER / 2;
+            glyphXs[2] = right;
+            glyphXs[3] = left;
+            glyphYs[0] = top;
+            glyphYs[1] = top;
+            glyphYs[2] = bottom;
+            glyphYs[3] = bottom;
+            g2d.setColor(glyphColor);
+            g2d.fillPolygon(glyphXs, glyphYs, 4);
+            g2d.setColor(edgeColor);
+            g2d.drawPolygon(glyphXs, glyphYs, 4);
+
+            int count = layout.last[i] - layout.first[i] + 1;
+            String label = count + " h" + (layout.shallowestLeaf[i] - layout.depth[i])
+                    + "-" + (layout.deepest[i] - layout.depth[i]);
+            FontMetrics fm = glyphFontMetrics;
+            if (fm.stringWidth(label) > right - left) return;
+            g2d.setFont(glyphFont);
+            g2d.setColor(Color.black);
+            g2d.drawString(label, x - fm.stringWidth(label) / 2, (top + bottom) / 2 + fm.getAscent() / 2);
+            g2d.setFont(NODE_FONT);
         }
 
-        private void drawNode(Graphics2D g2d, AVLTree.Node node, int x, int y) {
+        private void drawNode(Graphics2D g2d, TreeLayout layout, int i, int x, int y, boolean legible) {
             g2d.setColor(accentColor);
             g2d.fillOval(x - NODE_DIAMETER / 2, y - NODE_DIAMETER / 2, NODE_DIAMETER, NODE_DIAMETER);
+            if (!legible) return;
 
             g2d.setColor(Color.DARK_GRAY);
             g2d.drawOval(x - NODE_DIAMETER / 2, y - NODE_DIAMETER / 2, NODE_DIAMETER, NODE_DIAMETER);
 
-            String value = String.valueOf(node.getValue());
-            FontMetrics fm = g2d.getFontMetrics(new Font(Font.MONOSPACED, Font.BOLD, 14));
-            int textWidth = fm.stringWidth(value);
-            int textHeight = fm.getHeight();
-            g2d.setFont(new Font(Font.MONOSPACED, Font.BOLD, 14));
+            String value = layout.label(i);
+            int textWidth = nodeFontMetrics.stringWidth(value);
+            int textHeight = nodeFontMetrics.getHeight();
             g2d.setColor(Color.black);
             g2d.drawString(value, x - textWidth / 2, y + textHeight / 4);
         }
 
-        private void drawLine(Graphics2D g2d, int x1, int y1, int x2, int y2) {
-            g2d.setColor(accentColor.darker());
-            g2d.setStroke(new BasicStroke(3f));
+        private void drawLine(Graphics2D g2d, int x1, int y1, int x2, int y2, Rectangle clip) {
+            if (Math.max(x1, x2) < clip.x || Math.min(x1, x2) > clip.x + clip.width) return;
+            g2d.setColor(edgeColor);
             g2d.drawLine(x1, y1 + NODE_DIAMETER / 3, x2, y2 - NODE_DIAMETER / 3);
         }
     }
 
+    // Flattened snapshot of the tree for drawing. Nodes are numbered in
+    // in-order, which is also their column, and every subtree covers the
+    // contiguous columns [first, last], so culling a subtree is two compares.
+    // Built on the worker and not changed once handed to the event thread,
+    // apart from the label cache, which only the event thread fills.
+    private static final class TreeLayout {
+        final int count;
+        final int[] values;
+        final int[] depth;
+        final int[] left;
+        final int[] right;
+        final int[] first;
+        final int[] last;
+        final int[] deepest; // Deepest level of each subtree
+        final int[] shallowestLeaf; // Level of the highest leaf of each subtree
+        private final String[] labels;
+        int root;
+        int maxDepth;
+        private int next;
+
+        private TreeLayout(int count) {
+            this.count = count;
+            values = new int[count];
+            depth = new int[count];
+            left = new int[count];
+            right = new int[count];
+            first = new int[count];
+            last = new int[count];
+            deepest = new int[count];
+            shallowestLeaf = new int[count];
+            labels = new String[count];
+            next = 0;
+        }
+
+        static TreeLayout of(TreeNode root, int size) {
+            TreeLayout layout = new TreeLayout(size);
+            layout.root = layout.place(root, 0);
+            return layout;
+        }
+
+        // Lays out the subtree and returns the column of its root, or -1
+        private int place(TreeNode node, int nodeDepth) {
+            if (node == null) return -1;
+            int l = place(node.getLeft(), nodeDepth + 1);
+            int i = next++;
+            int r = place(node.getRight(), nodeDepth + 1);
+            values[i] = node.getValue();
+            depth[i] = nodeDepth;
+            maxDepth = Math.max(maxDepth, nodeDepth);
+            left[i] = l;
+            right[i] = r;
+            first[i] = l >= 0 ? first[l] : i;
+            last[i] = r >= 0 ? last[r] : i;
+            deepest[i] = Math.max(nodeDepth, Math.max(l >= 0 ? deepest[l] : 0, r >= 0 ? deepest[r] : 0));
+            if (l < 0 && r < 0) shallowestLeaf[i] = nodeDepth;
+            else if (l < 0) shallowestLeaf[i] = shallowestLeaf[r];
+            else if (r < 0) shallowestLeaf[i] = shallowestLeaf[l];
+            else shallowestLeaf[i] = Math.min(shallowestLeaf[l], shallowestLeaf[r]);
+            return i;
+        }
+
+        // Text is only built for nodes that get drawn, then kept
+        String label(int i) {
+            String label = labels[i];
+            if (label == null) {
+                label = String.valueOf(values[i]);
+                labels[i] = label;
+            }
+            return label;
+        }
+    }
+
     /**
      * WrapLayout: a FlowLayout subclass that supports wrapping in rows, useful for responsive button layout.
      * Source inspired/adapted from: https://tips4java.wordpress.com/2008/11/06/wrap-layout/
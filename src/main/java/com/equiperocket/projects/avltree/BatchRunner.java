@@ -0,0 +1,249 @@
+package com.equiperocket.projects.avltree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+// Non-interactive driver for any BinaryTree. Reads one command per line:
+//
+//   I <key>            insert, prints 1 if added and 0 if already present
+//   F <key>            find, prints 1 if present and 0 otherwise
+//   R <key>            remove, prints 1 if removed and 0 if absent
+//   RANGE <low> <high> prints the keys in [low, high] in order on one line
+//
+// Blank lines and lines starting with '#' are skipped. Input is parsed byte by
+// byte straight from a channel buffer and output is encoded into a byte buffer
+// that is written only when full, so neither side allocates per command.
+public final class BatchRunner {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_KEY_CHARS = 12;
+
+    private final BinaryTree<?> tree;
+
+    private ReadableByteChannel in;
+    private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] inputBytes = input.array();
+    private int inputPos;
+    private int inputLimit;
+    private long line;
+
+    private WritableByteChannel out;
+    private final ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] outputBytes = output.array();
+    private int outputLength;
+
+    private TreeNode[] stack = new TreeNode[64];
+
+    private long inserts, finds, removes, ranges;
+
+    public BatchRunner(BinaryTree<?> tree) {
+        this.tree = tree;
+    }
+
+    public record Summary(long inserts, long finds, long removes, long ranges, long nanos) {
+
+        public long operations() {
+            return inserts + finds + removes + ranges;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = nanos / 1e9;
+            return String.format("Batch: %d operations (%d inserts, %d finds, %d removes, %d ranges) in %.3f s, %.2f Mops/s",
+                    operations(), inserts, finds, removes, ranges, seconds,
+                    seconds == 0 ? 0 : operations() / seconds / 1e6);
+        }
+    }
+
+    // Runs every command of the stream and flushes the output at the end. An
+    // invalid command stops the run with a RuntimeException naming its line.
+    public Summary run(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        this.in = in;
+        this.out = out;
+        inputPos = inputLimit = 0;
+        outputLength = 0;
+        line = 0;
+        inserts = finds = removes = ranges = 0;
+
+        long start = System.nanoTime();
+        try {
+            int b;
+            while ((b = skipBlanks()) >= 0) {
+                line++;
+                switch (b) {
+                    case '\n' -> {
+                        // Blank line
+                    }
+                    case '#' -> skipLine();
+                    case 'I', 'i' -> {
+                        int key = readInt(nextByte());
+                        endLine();
+                        appendFlag(tree.insertKey(key));
+                        inserts++;
+                    }
+                    case 'F', 'f' -> {
+                        int key = readInt(nextByte());
+                        endLine();
+                        appendFlag(tree.contains(key));
+                        finds++;
+                    }
+                    case 'R', 'r' -> {
+                        int c = nextByte();
+                        if (c == 'A' || c == 'a') {
+                            expect('N');
+                            expect('G');
+                            expect('E');
+                            int low = readInt(nextByte());
+                            int high = readInt(nextByte());
+                            endLine();
+                            appendRange(low, high);
+                            ranges++;
+                        } else {
+                            int key = readInt(c);
+                            endLine();
+                            appendFlag(tree.removeKey(key));
+                            removes++;
+                        }
+                    }
+                    default -> throw error();
+                }
+            }
+        } finally {
+            // Results of the commands before an invalid one are still written
+            flush();
+        }
+        return new Summary(inserts, finds, removes, ranges, System.nanoTime() - start);
+    }
+
+    // ---- Input ----
+
+    private int nextByte() throws IOException {
+        if (inputPos == inputLimit) {
+            input.clear();
+            int read;
+            do {
+                read = in.read(input);
+            } while (read == 0);
+            if (read < 0) return -1;
+            inputPos = 0;
+            inputLimit = read;
+        }
+        return inputBytes[inputPos++] & 0xFF;
+    }
+
+    // First byte of the next line that is not a space, tab or '\r'
+    private int skipBlanks() throws IOException {
+        int b;
+        do {
+            b = nextByte();
+        } while (b == ' ' || b == '\t' || b == '\r');
+        return b;
+    }
+
+    private void skipLine() throws IOException {
+        int b;
+        do {
+            b = nextByte();
+        } while (b != '\n' && b >= 0);
+    }
+
+    private void expect(char upper) throws IOException {
+        int b = nextByte();
+        if (b != upper && b != Character.toLowerCase(upper)) throw error();
+    }
+
+    // Parses a signed int starting at b, after skipping leading blanks
+    private int readInt(int b) throws IOException {
+        while (b == ' ' || b == '\t') b = nextByte();
+        boolean negative = b == '-';
+        if (negative || b == '+') b = nextByte();
+        if (b < '0' || b > '9') throw error();
+
+        long value = 0;
+        do {
+            value = value * 10 + (b - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) throw error();
+            b = nextByte();
+        } while (b >= '0' && b <= '9');
+        if (b != ' ' && b != '\t' && b != '\r' && b != '\n' && b >= 0) throw error();
+        if (b >= 0) inputPos--; // Leave the separator for the next reader
+
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) throw error();
+        return (int) value;
+    }
+
+    private void endLine() throws IOException {
+        int b = skipBlanks();
+        if (b != '\n' && b >= 0) throw error();
+    }
+
+    private RuntimeException error() {
+        return new RuntimeException(String.format("Invalid command at line %d!", line));
+    }
+
+    // ---- Output ----
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (outputLength > BUFFER_SIZE - bytes) flush();
+    }
+
+    private void flush() throws IOException {
+        output.clear().limit(outputLength);
+        while (output.hasRemaining()) {
+            out.write(output);
+        }
+        outputLength = 0;
+    }
+
+    private void appendFlag(boolean flag) throws IOException {
+        ensureRoom(2);
+        outputBytes[outputLength++] = (byte) (flag ? '1' : '0');
+        outputBytes[outputLength++] = '\n';
+    }
+
+    // In-order walk that only enters subtrees overlapping [low, high]
+    private void appendRange(int low, int high) throws IOException {
+        int depth = 0;
+        TreeNode node = tree.getRoot();
+        boolean first = true;
+        while (node != null || depth > 0) {
+            while (node != null) {
+                if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+                stack[depth++] = node;
+                node = node.getValue() > low ? node.getLeft() : null;
+            }
+            node = stack[--depth];
+            int value = node.getValue();
+            if (value > high) break;
+            if (value >= low) {
+                ensureRoom(MAX_KEY_CHARS);
+                if (!first) outputBytes[outputLength++] = ' ';
+                outputLength = appendKey(value, outputBytes, outputLength);
+                first = false;
+            }
+            node = node.getRight();
+        }
+        Arrays.fill(stack, 0, depth, null);
+        ensureRoom(1);
+        outputBytes[outputLength++] = '\n';
+    }
+
+    private static int appendKey(int value, byte[] buf, int pos) {
+        long v = value; // long so that -Integer.MIN_VALUE does not overflow
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) digits++;
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return pos + digits;
+    }
+}
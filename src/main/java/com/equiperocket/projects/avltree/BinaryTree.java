@@ -0,0 +1,84 @@
+package com.equiperocket.projects.avltree;
+
+/**
+ * A balanced binary search tree of int keys whose nodes can be walked, the
+ * common surface of the engines created by {@link TreeFactory}.
+ *
+ * @param <N> The type of the nodes of the tree
+ */
+public interface BinaryTree<N extends TreeNode> extends Tree<Integer, N> {
+
+    /**
+     * @return The root node, or null if the tree is empty
+     */
+    N getRoot();
+
+    /**
+     * @return The number of keys in the tree
+     */
+    int size();
+
+    /**
+     * @param value The key to search for
+     * @return Whether the key is in the tree
+     */
+    boolean contains(int value);
+
+    /**
+     * Inserts a key without building a result string or throwing on duplicates.
+     *
+     * @param value The key to insert
+     * @return Whether the key was added (false if it was already present)
+     */
+    boolean insertKey(int value);
+
+    /**
+     * Removes a key without building a result string or throwing when absent.
+     *
+     * @param value The key to remove
+     * @return Whether the key was removed (false if it was not present)
+     */
+    boolean removeKey(int value);
+
+    /**
+     * @return The number of rotations made by the last insertion or removal
+     */
+    int getLastRotationsCount();
+
+    /**
+     * Copies the tree. Later changes to either tree do not affect the other.
+     *
+     * @return A tree of the same engine holding the same keys
+     */
+    BinaryTree<N> snapshot();
+
+    @Override
+    default String traverseInOrder() {
+        StringBuilder sb = new StringBuilder();
+        traverse(getRoot(), TraversalOrder.IN_ORDER, sb);
+        return sb.toString();
+    }
+
+    @Override
+    default String traversePreOrder() {
+        StringBuilder sb = new StringBuilder();
+        traverse(getRoot(), TraversalOrder.PRE_ORDER, sb);
+        return sb.toString();
+    }
+
+    @Override
+    default String traversePostOrder() {
+        StringBuilder sb = new StringBuilder();
+        traverse(getRoot(), TraversalOrder.POST_ORDER, sb);
+        return sb.toString();
+    }
+
+    private static void traverse(TreeNode node, TraversalOrder order, StringBuilder sb) {
+        if (node == null) return;
+        if (order == TraversalOrder.PRE_ORDER) sb.append(node.getValue()).append(' ');
+        traverse(node.getLeft(), order, sb);
+        if (order == TraversalOrder.IN_ORDER) sb.append(node.getValue()).append(' ');
+        traverse(node.getRight(), order, sb);
+        if (order == TraversalOrder.POST_ORDER) sb.append(node.getValue()).append(' ');
+    }
+}
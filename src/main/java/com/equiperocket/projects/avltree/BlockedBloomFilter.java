@@ -0,0 +1,122 @@
+package com.equiperocket.projects.avltree;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Split-block Bloom filter over int keys, used by AVLTree to answer most
+// misses without descending the tree. Each key maps to one 512-bit block (a
+// single cache line of eight longs) and sets one bit in each of its words, so
+// a query reads one cache line and needs no further hashing. About 10 bits
+// per key give a false-positive rate close to 1%.
+//
+// Bloom filters cannot forget keys: AVLTree rebuilds the filter once enough
+// removals have left stale bits, or once it holds more keys than it was sized
+// for. Lookup outcomes are counted so the real false-positive rate can be
+// compared with the expected one.
+public final class BlockedBloomFilter {
+
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BITS_PER_KEY = 10;
+    // Odd multipliers that pick a different bit of the block in each word
+    private static final long[] SALTS = {
+            0x47b6137b44974d91L, 0x8824ad5ba2b7289dL, 0x705495c72df1424bL, 0x9efc49475c6bfb31L,
+            0xb4b0c97f31a8f4e1L, 0xd8d35f6b7a9a0b25L, 0xe17f1c3bc1a5e5a3L, 0x2df1424b9efc4947L
+    };
+
+    private final long[] words;
+    private final int blocks;
+    private final int capacity;
+    private int keys;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public BlockedBloomFilter(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        blocks = (int) Math.max(1, ((long) this.capacity * BITS_PER_KEY + 511) / 512);
+        words = new long[blocks * WORDS_PER_BLOCK];
+        keys = 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // Keys added since the filter was built, including ones removed since
+    public int keys() {
+        return keys;
+    }
+
+    private static long hash(int key) {
+        // fmix64 from MurmurHash3
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private int blockOffset(long hash) {
+        return (int) (((hash >>> 32) * blocks) >>> 32) * WORDS_PER_BLOCK;
+    }
+
+    public void add(int key) {
+        long hash = hash(key);
+        int offset = blockOffset(hash);
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            words[offset + i] |= 1L << ((hash * SALTS[i]) >>> 58);
+        }
+        keys++;
+    }
+
+    // False means the key is certainly absent
+    public boolean mightContain(int key) {
+        long hash = hash(key);
+        int offset = blockOffset(hash);
+        long missing = 0;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            missing |= ~words[offset + i] & (1L << ((hash * SALTS[i]) >>> 58));
+        }
+        return missing == 0;
+    }
+
+    // ---- Statistics ----
+
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    // Lookups of absent keys answered by the filter alone
+    public long rejectedLookups() {
+        return rejected.sum();
+    }
+
+    // Lookups of absent keys that the filter let through to the tree
+    public long falsePositiveLookups() {
+        return falsePositives.sum();
+    }
+
+    public double observedFalsePositiveRate() {
+        long positives = falsePositives.sum();
+        long negatives = positives + rejected.sum();
+        return negatives == 0 ? 0 : (double) positives / negatives;
+    }
+
+    // (1 - e^(-kn/m))^k with k = 8 bits per key, ignoring the small extra cost
+    // of uneven block loads
+    public double expectedFalsePositiveRate() {
+        double bits = (double) words.length * Long.SIZE;
+        return Math.pow(1 - Math.exp(-WORDS_PER_BLOCK * keys / bits), WORDS_PER_BLOCK);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BlockedBloomFilter[keys=%d, capacity=%d, expected FPR=%.4f, observed FPR=%.4f]",
+                keys, capacity, expectedFalsePositiveRate(), observedFalsePositiveRate());
+    }
+}
@@ -0,0 +1,664 @@
+package com.equiperocket.projects.avltree;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+// Concurrent AVL tree with per-node locks and versions, after Bronson, Casper,
+// Chafi and Olukotun, "A Practical Concurrent Binary Search Tree" (PPoPP 2010).
+//
+// Readers never lock and never write. Every node carries a version that a
+// rotation bumps when it moves the node down (its subtree then covers fewer
+// keys) and that an unlink marks; a descent reads the child, then checks that
+// the parent's version is unchanged, so a key it is looking for cannot have
+// left the subtree it is entering. On a mismatch only that step is retried.
+//
+// Writers lock just the nodes they change: the parent of an inserted leaf,
+// the parent and the node of an unlink, and at most four nodes (parent, node,
+// child, grandchild, always top-down) for a rotation. Rebalancing climbs the
+// path one node at a time with relaxed balance, so concurrent writers in
+// different subtrees never wait for each other. Removing a node with two
+// children only clears its present flag; the routing node left behind is
+// unlinked as soon as it has fewer than two children.
+public class ConcurrentAVLTree implements Tree<Integer, Integer> {
+
+    // Version bits: a rotation marks SHRINKING while it moves the node down,
+    // then adds SHRINK_COUNT; an unlinked node keeps UNLINKED for good
+    private static final long UNLINKED = 1;
+    private static final long SHRINKING = 2;
+    private static final long SHRINK_COUNT = 4;
+    // Spins before waiting on the lock of a node that is being rotated
+    private static final int SPINS = 100;
+    // Pre/post-order attempts that must see no concurrent change before one
+    // is accepted as is
+    private static final int SHAPE_ATTEMPTS = 8;
+
+    private static final int RETRY = -1;
+    private static final int UNCHANGED = 0;
+    private static final int CHANGED = 1;
+
+    private static final int NOTHING_REQUIRED = -1;
+    private static final int REBALANCE_REQUIRED = -2;
+    private static final int UNLINK_REQUIRED = -3;
+
+    private static final int INSERT = 1;
+    private static final int REMOVE = 2;
+
+    // Sentinel above the root: its right child is the root of the tree
+    private final Node holder;
+    private final LongAdder size;
+
+    public ConcurrentAVLTree() {
+        holder = new Node(0, false, null);
+        size = new LongAdder();
+    }
+
+    @Override
+    public String insert(Integer value) throws RuntimeException {
+        int[] rotations = new int[1];
+        if (!update(value, INSERT, rotations)) {
+            throw new RuntimeException(String.format("Value %d already exists in the tree!", value));
+        }
+        return "Rotations made in insertion: " + rotations[0];
+    }
+
+    public boolean insertKey(int value) {
+        return update(value, INSERT, null);
+    }
+
+    @Override
+    public String remove(Integer value) throws RuntimeException {
+        int[] rotations = new int[1];
+        if (!update(value, REMOVE, rotations)) {
+            throw new RuntimeException(String.format("Value %d not found in the tree!", value));
+        }
+        return "Rotations made in removal: " + rotations[0];
+    }
+
+    public boolean removeKey(int value) {
+        return update(value, REMOVE, null);
+    }
+
+    // Returns the value itself when present, like IntAVLTree.find
+    @Override
+    public Integer find(Integer value) {
+        return contains(value) ? value : null;
+    }
+
+    public boolean contains(int value) {
+        while (true) {
+            int result = attemptContains(value, holder, 1, holder.version);
+            if (result != RETRY) return result == CHANGED;
+        }
+    }
+
+    // Exact when no writer runs, otherwise a recent count
+    public int size() {
+        return size.intValue();
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static boolean isChanging(long version) {
+        return (version & (SHRINKING | UNLINKED)) != 0;
+    }
+
+    // The rotating thread holds the node's lock, so after a short spin waiting
+    // for it is waiting for the rotation
+    private static void waitUntilShrinkCompleted(Node node, long version) {
+        if ((version & SHRINKING) == 0) return;
+        for (int i = 0; i < SPINS; i++) {
+            if (node.version != version) return;
+            Thread.onSpinWait();
+        }
+        synchronized (node) {
+            // Nothing to do, the rotation is over once the lock is ours
+        }
+    }
+
+    // ---- Search ----
+
+    // CHANGED when found, UNCHANGED when absent, RETRY when node changed under us
+    private int attemptContains(int key, Node node, int dir, long nodeVersion) {
+        while (true) {
+            Node child = node.child(dir);
+            if (child == null) {
+                return node.version != nodeVersion ? RETRY : UNCHANGED;
+            }
+            int childDir = Integer.compare(key, child.key);
+            if (childDir == 0) return child.present ? CHANGED : UNCHANGED;
+
+            long childVersion = child.version;
+            if (isChanging(childVersion)) {
+                waitUntilShrinkCompleted(child, childVersion);
+                if (node.version != nodeVersion) return RETRY;
+            } else if (child != node.child(dir)) {
+                if (node.version != nodeVersion) return RETRY;
+            } else {
+                if (node.version != nodeVersion) return RETRY;
+                int result = attemptContains(key, child, childDir, childVersion);
+                if (result != RETRY) return result;
+            }
+        }
+    }
+
+    // ---- Insert and remove ----
+
+    // rotations[0] collects the rotations made on behalf of this call; the
+    // primitive insertKey/removeKey pass null and allocate nothing
+    private boolean update(int key, int op, int[] rotations) {
+        while (true) {
+            int result = attemptUpdate(key, op, holder, 1, holder.version, rotations);
+            if (result != RETRY) {
+                if (result == CHANGED) size.add(op == INSERT ? 1 : -1);
+                return result == CHANGED;
+            }
+        }
+    }
+
+    private int attemptUpdate(int key, int op, Node parent, int dir, long parentVersion, int[] rotations) {
+        while (true) {
+            Node child = parent.child(dir);
+            if (parent.version != parentVersion) return RETRY;
+
+            if (child == null) {
+                if (op == REMOVE) return UNCHANGED;
+                synchronized (parent) {
+                    if (parent.version != parentVersion) return RETRY;
+                    if (parent.child(dir) != null) continue; // Lost the race for the slot
+                    parent.setChild(dir, new Node(key, true, parent));
+                }
+                fixHeightAndRebalance(parent, rotations);
+                return CHANGED;
+            }
+
+            int childDir = Integer.compare(key, child.key);
+            if (childDir == 0) {
+                int result = op == INSERT ? attemptInsertPresent(child) : attemptRemoveNode(parent, child, rotations);
+                if (result != RETRY) return result;
+                continue;
+            }
+
+            long childVersion = child.version;
+            if (isChanging(childVersion)) {
+                waitUntilShrinkCompleted(child, childVersion);
+            } else if (child == parent.child(dir)) {
+                if (parent.version != parentVersion) return RETRY;
+                int result = attemptUpdate(key, op, child, childDir, childVersion, rotations);
+                if (result != RETRY) return result;
+            }
+        }
+    }
+
+    // The key has a node, which may be a routing node that lost it earlier
+    private static int attemptInsertPresent(Node node) {
+        if (node.present) return UNCHANGED;
+        synchronized (node) {
+            if ((node.version & UNLINKED) != 0) return RETRY;
+            if (node.present) return UNCHANGED;
+            node.present = true;
+            return CHANGED;
+        }
+    }
+
+    private int attemptRemoveNode(Node parent, Node node, int[] rotations) {
+        if (!node.present) return UNCHANGED;
+
+        if (node.left == null || node.right == null) {
+            synchronized (parent) {
+                if ((parent.version & UNLINKED) != 0 || node.parent != parent) return RETRY;
+                synchronized (node) {
+                    if ((node.version & UNLINKED) != 0) return RETRY;
+                    if (!node.present) return UNCHANGED;
+                    node.present = false;
+                    // Fails if a second child appeared meanwhile, which leaves a routing node
+                    attemptUnlink(parent, node);
+                }
+            }
+            fixHeightAndRebalance(parent, rotations);
+        } else {
+            synchronized (node) {
+                if ((node.version & UNLINKED) != 0) return RETRY;
+                if (!node.present) return UNCHANGED;
+                node.present = false;
+            }
+            // It may have lost a child meanwhile and need unlinking
+            fixHeightAndRebalance(node, rotations);
+        }
+        return CHANGED;
+    }
+
+    // Parent and node must be locked, and node must not be present
+    private static boolean attemptUnlink(Node parent, Node node) {
+        Node parentLeft = parent.left;
+        if (parentLeft != node && parent.right != node) return false;
+        Node left = node.left;
+        Node right = node.right;
+        if (left != null && right != null) return false;
+
+        Node splice = left != null ? left : right;
+        if (parentLeft == node) {
+            parent.left = splice;
+        } else {
+            parent.right = splice;
+        }
+        if (splice != null) splice.parent = parent;
+        node.version = UNLINKED;
+        return true;
+    }
+
+    // ---- Rebalancing ----
+
+    // Climbs from node towards the root, fixing one node per step with only the
+    // locks that step needs, until a node needs nothing. A rotation that leaves
+    // a node below it damaged returns that node first; its parent, whose height
+    // was set from the subtree as it was then, is kept on pending and checked
+    // again once the climb from below stops.
+    private void fixHeightAndRebalance(Node node, int[] rotations) {
+        ArrayDeque<Node> pending = null;
+        while (true) {
+            if (node == null || node.parent == null || (node.version & UNLINKED) != 0
+                    || nodeCondition(node) == NOTHING_REQUIRED) {
+                if (pending == null || pending.isEmpty()) return;
+                node = pending.pop();
+                continue;
+            }
+
+            int condition = nodeCondition(node);
+            if (condition != UNLINK_REQUIRED && condition != REBALANCE_REQUIRED) {
+                synchronized (node) {
+                    node = fixHeight(node);
+                }
+            } else {
+                Node parent = node.parent;
+                synchronized (parent) {
+                    if ((parent.version & UNLINKED) == 0 && node.parent == parent) {
+                        Node next;
+                        synchronized (node) {
+                            next = rebalance(parent, node, rotations);
+                        }
+                        if (next != null && next != parent && next != parent.parent) {
+                            if (pending == null) pending = new ArrayDeque<>();
+                            pending.push(parent);
+                        }
+                        node = next;
+                    }
+                    // Otherwise the parent changed: try the same node again
+                }
+            }
+        }
+    }
+
+    // NOTHING_REQUIRED, UNLINK_REQUIRED, REBALANCE_REQUIRED or the new height
+    private static int nodeCondition(Node node) {
+        Node left = node.left;
+        Node right = node.right;
+        if ((left == null || right == null) && !node.present) return UNLINK_REQUIRED;
+
+        int hN = node.height;
+        int hL = height(left);
+        int hR = height(right);
+        int balance = hL - hR;
+        if (balance < -1 || balance > 1) return REBALANCE_REQUIRED;
+        int hNRepl = 1 + Math.max(hL, hR);
+        return hN != hNRepl ? hNRepl : NOTHING_REQUIRED;
+    }
+
+    // Node must be locked. Returns the next node to fix, or null when done.
+    private static Node fixHeight(Node node) {
+        int condition = nodeCondition(node);
+        switch (condition) {
+            case REBALANCE_REQUIRED, UNLINK_REQUIRED:
+                return node; // Needs the parent's lock too
+            case NOTHING_REQUIRED:
+                return null;
+            default:
+                node.height = condition;
+                return node.parent;
+        }
+    }
+
+    // Parent and node must be locked
+    private Node rebalance(Node parent, Node node, int[] rotations) {
+        Node left = node.left;
+        Node right = node.right;
+        if ((left == null || right == null) && !node.present) {
+            return attemptUnlink(parent, node) ? fixHeight(parent) : node;
+        }
+
+        int hN = node.height;
+        int hL0 = height(left);
+        int hR0 = height(right);
+        int balance = hL0 - hR0;
+        if (balance > 1) return rebalanceToRight(parent, node, left, hR0, rotations);
+        if (balance < -1) return rebalanceToLeft(parent, node, right, hL0, rotations);
+
+        int hNRepl = 1 + Math.max(hL0, hR0);
+        if (hNRepl != hN) {
+            node.height = hNRepl;
+            return fixHeight(parent);
+        }
+        return null;
+    }
+
+    // Left side too high: single rotation, or double when the inner grandchild
+    // is the taller one
+    private Node rebalanceToRight(Node parent, Node node, Node left, int hR0, int[] rotations) {
+        synchronized (left) {
+            int hL = left.height;
+            if (hL - hR0 <= 1) return node; // Changed meanwhile, look again
+
+            Node leftRight = left.right;
+            int hLL0 = height(left.left);
+            int hLR0 = height(leftRight);
+            if (hLL0 >= hLR0) {
+                return rotateRight(parent, node, left, hR0, hLL0, leftRight, hLR0, rotations);
+            }
+            synchronized (leftRight) {
+                int hLR = leftRight.height;
+                if (hLL0 >= hLR) {
+                    return rotateRight(parent, node, left, hR0, hLL0, leftRight, hLR, rotations);
+                }
+                int hLRL = height(leftRight.left);
+                int balance = hLL0 - hLRL;
+                // Unless a double rotation would leave left unbalanced
+                if (balance >= -1 && balance <= 1) {
+                    return rotateRightOverLeft(parent, node, left, hR0, hLL0, leftRight, hLRL, rotations);
+                }
+            }
+            // Fix left first; node is revisited by the caller
+            return rebalanceToLeft(node, left, leftRight, hLL0, rotations);
+        }
+    }
+
+    // Mirror of rebalanceToRight
+    private Node rebalanceToLeft(Node parent, Node node, Node right, int hL0, int[] rotations) {
+        synchronized (right) {
+            int hR = right.height;
+            if (hL0 - hR >= -1) return node;
+
+            Node rightLeft = right.left;
+            int hRL0 = height(rightLeft);
+            int hRR0 = height(right.right);
+            if (hRR0 >= hRL0) {
+                return rotateLeft(parent, node, hL0, right, rightLeft, hRL0, hRR0, rotations);
+            }
+            synchronized (rightLeft) {
+                int hRL = rightLeft.height;
+                if (hRR0 >= hRL) {
+                    return rotateLeft(parent, node, hL0, right, rightLeft, hRL, hRR0, rotations);
+                }
+                int hRLR = height(rightLeft.right);
+                int balance = hRR0 - hRLR;
+                if (balance >= -1 && balance <= 1) {
+                    return rotateLeftOverRight(parent, node, hL0, right, rightLeft, hRR0, hRLR, rotations);
+                }
+            }
+            return rebalanceToRight(node, right, rightLeft, hRR0, rotations);
+        }
+    }
+
+    // Left element of node now becomes the subtree root. Returns the next node
+    // that needs attention, or null.
+    private Node rotateRight(Node parent, Node node, Node left, int hR, int hLL, Node leftRight, int hLR,
+                             int[] rotations) {
+        long nodeVersion = node.version;
+        Node parentLeft = parent.left;
+
+        node.version = nodeVersion | SHRINKING;
+        node.left = leftRight;
+        if (leftRight != null) leftRight.parent = node;
+        left.right = node;
+        node.parent = left;
+        if (parentLeft == node) {
+            parent.left = left;
+        } else {
+            parent.right = left;
+        }
+        left.parent = parent;
+
+        int hNRepl = 1 + Math.max(hLR, hR);
+        node.height = hNRepl;
+        left.height = 1 + Math.max(hLL, hNRepl);
+        node.version = nodeVersion + SHRINK_COUNT;
+        if (rotations != null) rotations[0]++;
+
+        int balanceN = hLR - hR;
+        if (balanceN < -1 || balanceN > 1) return node;
+        if ((leftRight == null || hR == 0) && !node.present) return node;
+        int balanceL = hLL - hNRepl;
+        if (balanceL < -1 || balanceL > 1) return left;
+        if (hLL == 0 && !left.present) return left;
+        return fixHeight(parent);
+    }
+
+    // Mirror of rotateRight
+    private Node rotateLeft(Node parent, Node node, int hL, Node right, Node rightLeft, int hRL, int hRR,
+                            int[] rotations) {
+        long nodeVersion = node.version;
+        Node parentLeft = parent.left;
+
+        node.version = nodeVersion | SHRINKING;
+        node.right = rightLeft;
+        if (rightLeft != null) rightLeft.parent = node;
+        right.left = node;
+        node.parent = right;
+        if (parentLeft == node) {
+            parent.left = right;
+        } else {
+            parent.right = right;
+        }
+        right.parent = parent;
+
+        int hNRepl = 1 + Math.max(hL, hRL);
+        node.height = hNRepl;
+        right.height = 1 + Math.max(hNRepl, hRR);
+        node.version = nodeVersion + SHRINK_COUNT;
+        if (rotations != null) rotations[0]++;
+
+        int balanceN = hRL - hL;
+        if (balanceN < -1 || balanceN > 1) return node;
+        if ((rightLeft == null || hL == 0) && !node.present) return node;
+        int balanceR = hRR - hNRepl;
+        if (balanceR < -1 || balanceR > 1) return right;
+        if (hRR == 0 && !right.present) return right;
+        return fixHeight(parent);
+    }
+
+    // Left-right case: the inner grandchild becomes the subtree root
+    private Node rotateRightOverLeft(Node parent, Node node, Node left, int hR, int hLL, Node leftRight,
+                                     int hLRL, int[] rotations) {
+        long nodeVersion = node.version;
+        long leftVersion = left.version;
+        Node parentLeft = parent.left;
+        Node leftRightLeft = leftRight.left;
+        Node leftRightRight = leftRight.right;
+        int hLRR = height(leftRightRight);
+
+        node.version = nodeVersion | SHRINKING;
+        left.version = leftVersion | SHRINKING;
+        node.left = leftRightRight;
+        if (leftRightRight != null) leftRightRight.parent = node;
+        left.right = leftRightLeft;
+        if (leftRightLeft != null) leftRightLeft.parent = left;
+        leftRight.left = left;
+        left.parent = leftRight;
+        leftRight.right = node;
+        node.parent = leftRight;
+        if (parentLeft == node) {
+            parent.left = leftRight;
+        } else {
+            parent.right = leftRight;
+        }
+        leftRight.parent = parent;
+
+        int hNRepl = 1 + Math.max(hLRR, hR);
+        node.height = hNRepl;
+        int hLRepl = 1 + Math.max(hLL, hLRL);
+        left.height = hLRepl;
+        leftRight.height = 1 + Math.max(hLRepl, hNRepl);
+        node.version = nodeVersion + SHRINK_COUNT;
+        left.version = leftVersion + SHRINK_COUNT;
+        if (rotations != null) rotations[0] += 2;
+
+        int balanceN = hLRR - hR;
+        if (balanceN < -1 || balanceN > 1) return node;
+        if ((leftRightRight == null || hR == 0) && !node.present) return node;
+        // left may be a routing node that lost a child and must go
+        if ((hLL == 0 || hLRL == 0) && !left.present) return left;
+        int balanceLR = hLRepl - hNRepl;
+        if (balanceLR < -1 || balanceLR > 1) return leftRight;
+        return fixHeight(parent);
+    }
+
+    // Mirror of rotateRightOverLeft
+    private Node rotateLeftOverRight(Node parent, Node node, int hL, Node right, Node rightLeft, int hRR,
+                                     int hRLR, int[] rotations) {
+        long nodeVersion = node.version;
+        long rightVersion = right.version;
+        Node parentLeft = parent.left;
+        Node rightLeftLeft = rightLeft.left;
+        Node rightLeftRight = rightLeft.right;
+        int hRLL = height(rightLeftLeft);
+
+        node.version = nodeVersion | SHRINKING;
+        right.version = rightVersion | SHRINKING;
+        node.right = rightLeftLeft;
+        if (rightLeftLeft != null) rightLeftLeft.parent = node;
+        right.left = rightLeftRight;
+        if (rightLeftRight != null) rightLeftRight.parent = right;
+        rightLeft.right = right;
+        right.parent = rightLeft;
+        rightLeft.left = node;
+        node.parent = rightLeft;
+        if (parentLeft == node) {
+            parent.left = rightLeft;
+        } else {
+            parent.right = rightLeft;
+        }
+        rightLeft.parent = parent;
+
+        int hNRepl = 1 + Math.max(hL, hRLL);
+        node.height = hNRepl;
+        int hRRepl = 1 + Math.max(hRLR, hRR);
+        right.height = hRRepl;
+        rightLeft.height = 1 + Math.max(hNRepl, hRRepl);
+        node.version = nodeVersion + SHRINK_COUNT;
+        right.version = rightVersion + SHRINK_COUNT;
+        if (rotations != null) rotations[0] += 2;
+
+        int balanceN = hRLL - hL;
+        if (balanceN < -1 || balanceN > 1) return node;
+        if ((rightLeftLeft == null || hL == 0) && !node.present) return node;
+        if ((hRR == 0 || hRLR == 0) && !right.present) return right;
+        int balanceRL = hRRepl - hNRepl;
+        if (balanceRL < -1 || balanceRL > 1) return rightLeft;
+        return fixHeight(parent);
+    }
+
+    // ---- Traversals ----
+
+    @Override
+    public String traverseInOrder() {
+        StringBuilder sb = new StringBuilder();
+        forEach(value -> sb.append(value).append(' '));
+        return sb.toString();
+    }
+
+    @Override
+    public String traversePreOrder() {
+        return traverseShape(TraversalOrder.PRE_ORDER);
+    }
+
+    @Override
+    public String traversePostOrder() {
+        return traverseShape(TraversalOrder.POST_ORDER);
+    }
+
+    // Pushes the keys in ascending order without locking. Every key present
+    // for the whole call is visited once and keys come out strictly ascending.
+    // A node that changed while its subtree was walked may have moved keys
+    // across the walk, so the walk restarts from the root, skipping everything
+    // up to the last key pushed.
+    public void forEach(IntConsumer action) {
+        long[] last = {Long.MIN_VALUE};
+        while (!walkInOrder(holder.right, last, action)) {
+            // Restart past the last key pushed
+        }
+    }
+
+    private static boolean walkInOrder(Node node, long[] last, IntConsumer action) {
+        if (node == null) return true;
+        long version = node.version;
+        if (isChanging(version)) {
+            waitUntilShrinkCompleted(node, version);
+            return false;
+        }
+        if (node.key > last[0]) {
+            if (!walkInOrder(node.left, last, action)) return false;
+            if (node.version != version) return false;
+            if (node.present && node.key > last[0]) {
+                action.accept(node.key);
+                last[0] = node.key;
+            }
+        }
+        if (!walkInOrder(node.right, last, action)) return false;
+        return node.version == version;
+    }
+
+    // Pre/post order describe the shape, which concurrent writers keep
+    // changing: a walk that saw a change is retried, and after SHAPE_ATTEMPTS
+    // the last walk is returned as a weakly consistent view
+    private String traverseShape(TraversalOrder order) {
+        StringBuilder sb = new StringBuilder();
+        for (int attempt = 1; ; attempt++) {
+            sb.setLength(0);
+            boolean validate = attempt < SHAPE_ATTEMPTS;
+            if (walkShape(holder.right, order, sb, validate) || !validate) return sb.toString();
+        }
+    }
+
+    private static boolean walkShape(Node node, TraversalOrder order, StringBuilder sb, boolean validate) {
+        if (node == null) return true;
+        long version = node.version;
+        if (validate && isChanging(version)) return false;
+        if (order == TraversalOrder.PRE_ORDER && node.present) sb.append(node.key).append(' ');
+        if (!walkShape(node.left, order, sb, validate)) return false;
+        if (!walkShape(node.right, order, sb, validate)) return false;
+        if (order == TraversalOrder.POST_ORDER && node.present) sb.append(node.key).append(' ');
+        return !validate || node.version == version;
+    }
+
+    private static final class Node {
+        private final int key;
+        // False for a routing node, whose key was removed while it had two children
+        private volatile boolean present;
+        private volatile int height;
+        private volatile long version;
+        private volatile Node parent;
+        private volatile Node left;
+        private volatile Node right;
+
+        private Node(int key, boolean present, Node parent) {
+            this.key = key;
+            this.present = present;
+            this.parent = parent;
+            height = 1;
+            version = 0;
+        }
+
+        private Node child(int dir) {
+            return dir < 0 ? left : right;
+        }
+
+        private void setChild(int dir, Node child) {
+            if (dir < 0) {
+                left = child;
+            } else {
+                right = child;
+            }
+        }
+    }
+}
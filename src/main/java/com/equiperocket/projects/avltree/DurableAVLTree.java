@@ -0,0 +1,522 @@
+package com.equiperocket.projects.avltree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32C;
+
+// AVLTree whose mutations survive a restart. Every successful insert/remove
+// is appended to a write-ahead log as a 5-byte record (operation, key) and
+// only returns once that record is fsynced. Records are group-committed: the
+// first caller to wait becomes the leader and writes every pending record as
+// one CRC-protected frame outside the lock, while callers arriving meanwhile
+// add their records to the next group (at most groupSize per frame) and are
+// covered by the next fsync. With one thread every operation pays its own
+// fsync; with many, one fsync covers many operations.
+//
+// A checkpoint takes an O(1) snapshot under the lock and streams its keys to a
+// snapshot file (written to a temporary file and atomically renamed) without
+// holding it, so mutations go on meanwhile; the log is then replaced by the
+// frames appended since the snapshot. Automatic checkpoints run on their own
+// thread. On open, the snapshot is bulk-loaded in O(n) and the log replayed on
+// top of it; a torn or corrupt frame at the end of the log marks where replay
+// stops. Replay is idempotent (the last operation on a key decides whether it
+// is present), so a crash between the two renames is harmless.
+//
+// A mutation is applied in memory before its record is forced, so other
+// threads may briefly see it before it is durable. If a log write fails, every
+// record that was not yet forced is undone in memory, newest first, its callers
+// get the error, and every further mutation is refused.
+public class DurableAVLTree implements Tree<Integer, AVLTree.Node>, Closeable {
+
+    private static final String SNAPSHOT_FILE = "tree.snapshot";
+    private static final String LOG_FILE = "tree.wal";
+    private static final int SNAPSHOT_MAGIC = 0x41564C53; // "AVLS"
+
+    private static final byte INSERT = 1;
+    private static final byte REMOVE = 2;
+    private static final int RECORD_SIZE = 5;
+    private static final int FRAME_HEADER = 8; // payload length + CRC32C
+    private static final int IO_CHUNK = 1 << 16;
+
+    public static final int DEFAULT_GROUP_SIZE = 256;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1 << 20;
+
+    private final Path directory;
+    private final AVLTree tree;
+    private FileChannel log;
+    // Records being collected, and the buffer they swap with while a frame is
+    // written (null during that write)
+    private ByteBuffer group;
+    private ByteBuffer spare;
+    private final int groupSize;
+    private final int checkpointInterval;
+    private final ExecutorService checkpointer;
+    // Held for a whole checkpoint, so only one runs at a time
+    private final Object checkpointLock = new Object();
+
+    private int pendingOps;
+    // Records appended and records forced to disk since open; a caller waits
+    // until durableOps reaches the number of its own record
+    private long appendedOps;
+    private long durableOps;
+    // Whether a leader is writing a frame without holding the lock
+    private boolean flushing;
+    private int opsSinceCheckpoint;
+    private boolean checkpointQueued;
+    private IOException failure;
+
+    private DurableAVLTree(Path directory, AVLTree tree, FileChannel log, int groupSize, int checkpointInterval) {
+        this.directory = directory;
+        this.tree = tree;
+        this.log = log;
+        this.groupSize = groupSize;
+        this.checkpointInterval = checkpointInterval;
+        group = ByteBuffer.allocate(FRAME_HEADER + groupSize * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        group.position(FRAME_HEADER);
+        spare = ByteBuffer.allocate(group.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+        spare.position(FRAME_HEADER);
+        pendingOps = 0;
+        appendedOps = 0;
+        durableOps = 0;
+        flushing = false;
+        opsSinceCheckpoint = 0;
+
+        checkpointer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "avl-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static DurableAVLTree open(Path directory) throws IOException {
+        return open(directory, DEFAULT_GROUP_SIZE, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    public static DurableAVLTree open(Path directory, int groupSize, int checkpointInterval) throws IOException {
+        if (groupSize < 1 || checkpointInterval < 1) {
+            throw new IllegalArgumentException("Group size and checkpoint interval must be positive!");
+        }
+        Files.createDirectories(directory);
+        AVLTree tree = new AVLTree();
+        readSnapshot(directory.resolve(SNAPSHOT_FILE), tree);
+
+        FileChannel log = FileChannel.open(directory.resolve(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long end = replay(log, tree);
+            log.truncate(end);
+            log.position(end);
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        return new DurableAVLTree(directory, tree, log, groupSize, checkpointInterval);
+    }
+
+    private static void readSnapshot(Path file, AVLTree tree) throws IOException {
+        if (!Files.exists(file)) return;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            if (header.getInt(0) != SNAPSHOT_MAGIC) throw new IOException("Bad snapshot file " + file);
+            int[] keys = new int[header.getInt(4)];
+            ByteBuffer chunk = ByteBuffer.allocate(IO_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < keys.length; ) {
+                chunk.clear().limit(Math.min(IO_CHUNK, (keys.length - i) * Integer.BYTES));
+                readFully(channel, chunk);
+                chunk.flip();
+                while (chunk.hasRemaining()) keys[i++] = chunk.getInt();
+            }
+            tree.bulkLoad(keys);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new IOException("Unexpected end of file");
+        }
+    }
+
+    // Applies every intact frame and returns the offset right after the last one
+    private static long replay(FileChannel log, AVLTree tree) throws IOException {
+        long size = log.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer payload = ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32C crc = new CRC32C();
+        while (position + FRAME_HEADER <= size) {
+            header.clear();
+            log.read(header, position);
+            int length = header.getInt(0);
+            if (length <= 0 || length % RECORD_SIZE != 0 || position + FRAME_HEADER + length > size) break;
+
+            if (payload.capacity() < length) payload = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            payload.clear().limit(length);
+            while (payload.hasRemaining()) {
+                log.read(payload, position + FRAME_HEADER + payload.position());
+            }
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != header.getInt(4)) break;
+
+            for (int offset = 0; offset < length; offset += RECORD_SIZE) {
+                int key = payload.getInt(offset + 1);
+                if (payload.get(offset) == INSERT) {
+                    tree.insertKey(key);
+                } else {
+                    tree.removeKey(key);
+                }
+            }
+            position += FRAME_HEADER + length;
+        }
+        return position;
+    }
+
+    // ---- Tree ----
+
+    @Override
+    public String insert(Integer value) throws RuntimeException {
+        String result;
+        long ticket;
+        synchronized (this) {
+            reserveRecord();
+            result = tree.insert(value);
+            ticket = append(INSERT, value);
+        }
+        awaitDurable(ticket);
+        return result;
+    }
+
+    public boolean insertKey(int value) {
+        long ticket;
+        synchronized (this) {
+            reserveRecord();
+            if (!tree.insertKey(value)) return false;
+            ticket = append(INSERT, value);
+        }
+        awaitDurable(ticket);
+        return true;
+    }
+
+    @Override
+    public synchronized AVLTree.Node find(Integer value) {
+        return tree.find(value);
+    }
+
+    public synchronized boolean contains(int value) {
+        return tree.contains(value);
+    }
+
+    @Override
+    public String remove(Integer value) throws RuntimeException {
+        String result;
+        long ticket;
+        synchronized (this) {
+            reserveRecord();
+            result = tree.remove(value);
+            ticket = append(REMOVE, value);
+        }
+        awaitDurable(ticket);
+        return result;
+    }
+
+    public boolean removeKey(int value) {
+        long ticket;
+        synchronized (this) {
+            reserveRecord();
+            if (!tree.removeKey(value)) return false;
+            ticket = append(REMOVE, value);
+        }
+        awaitDurable(ticket);
+        return true;
+    }
+
+    public synchronized int size() {
+        return tree.size();
+    }
+
+    @Override
+    public synchronized String traverseInOrder() {
+        return tree.traverseInOrder();
+    }
+
+    @Override
+    public synchronized String traversePreOrder() {
+        return tree.traversePreOrder();
+    }
+
+    @Override
+    public synchronized String traversePostOrder() {
+        return tree.traversePostOrder();
+    }
+
+    // ---- Log ----
+
+    // Called with the lock held before the tree is touched: refuses mutations
+    // after a failure and makes room for one record, so the mutation and its
+    // record are added in the same critical section and the log keeps the
+    // order in which memory changed
+    private void reserveRecord() {
+        while (true) {
+            if (failure != null) throw new UncheckedIOException("The write-ahead log failed earlier", failure);
+            if (pendingOps < groupSize) return;
+            try {
+                flushLocked();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write the write-ahead log", e);
+            }
+        }
+    }
+
+    // Adds the record of a mutation just applied to the tree and returns its
+    // number, which the caller passes to awaitDurable once it has left the lock
+    private long append(byte op, int key) {
+        group.put(op).putInt(key);
+        pendingOps++;
+        opsSinceCheckpoint++;
+        if (opsSinceCheckpoint >= checkpointInterval && !checkpointQueued) {
+            checkpointQueued = true;
+            checkpointer.execute(this::checkpointInBackground);
+        }
+        return ++appendedOps;
+    }
+
+    // Returns once record ticket is on disk. If no frame is being written the
+    // caller becomes the leader and writes everything pending, without the lock
+    private void awaitDurable(long ticket) {
+        ByteBuffer frame;
+        FileChannel channel;
+        long upTo;
+        synchronized (this) {
+            while (true) {
+                if (durableOps >= ticket) return;
+                // The record was undone along with the rest of its group
+                if (failure != null) throw new UncheckedIOException("Could not write the write-ahead log", failure);
+                if (!flushing) break;
+                awaitFlush();
+            }
+            frame = takeGroup();
+            upTo = appendedOps;
+            channel = log;
+            flushing = true;
+        }
+
+        try {
+            writeFrame(channel, frame);
+        } catch (IOException e) {
+            synchronized (this) {
+                flushing = false;
+                fail(e, frame);
+            }
+            throw new UncheckedIOException("Could not write the write-ahead log", e);
+        }
+        synchronized (this) {
+            flushing = false;
+            completed(frame, upTo);
+        }
+    }
+
+    // With the lock held: waits for a leader's write to finish, then writes the
+    // pending records itself
+    private void flushLocked() throws IOException {
+        while (flushing) awaitFlush();
+        if (failure != null) throw failure;
+        if (pendingOps == 0) return;
+        ByteBuffer frame = takeGroup();
+        long upTo = appendedOps;
+        try {
+            writeFrame(log, frame);
+        } catch (IOException e) {
+            fail(e, frame);
+            throw e;
+        }
+        completed(frame, upTo);
+    }
+
+    // Waits on the lock until the running leader is done, ignoring interrupts:
+    // giving up would leave the caller not knowing whether its record is durable
+    private void awaitFlush() {
+        boolean interrupted = false;
+        while (flushing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // Seals the pending records into a frame and starts a new group in the spare buffer
+    private ByteBuffer takeGroup() {
+        ByteBuffer frame = group;
+        int length = frame.position() - FRAME_HEADER;
+        CRC32C crc = new CRC32C();
+        crc.update(frame.array(), FRAME_HEADER, length);
+        frame.putInt(0, length).putInt(4, (int) crc.getValue());
+        frame.flip();
+        group = spare;
+        spare = null;
+        pendingOps = 0;
+        return frame;
+    }
+
+    private static void writeFrame(FileChannel channel, ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+        channel.force(false);
+    }
+
+    private void completed(ByteBuffer frame, long upTo) {
+        durableOps = upTo;
+        spare = frame.clear().position(FRAME_HEADER);
+        notifyAll();
+    }
+
+    // Undoes every record that is not on disk, newest first: the ones collected
+    // since frame was taken, then those of frame itself
+    private void fail(IOException e, ByteBuffer frame) {
+        failure = e;
+        undo(group, group.position());
+        undo(frame, frame.limit());
+        group.clear().position(FRAME_HEADER);
+        pendingOps = 0;
+        spare = frame.clear().position(FRAME_HEADER);
+        notifyAll();
+    }
+
+    private void undo(ByteBuffer records, int end) {
+        for (int offset = end - RECORD_SIZE; offset >= FRAME_HEADER; offset -= RECORD_SIZE) {
+            int key = records.getInt(offset + 1);
+            if (records.get(offset) == INSERT) {
+                tree.removeKey(key);
+            } else {
+                tree.insertKey(key);
+            }
+        }
+    }
+
+    // Forces out the records of calls still waiting in other threads; a call
+    // that returned is already durable
+    public synchronized void sync() throws IOException {
+        flushLocked();
+    }
+
+    private void checkpointInBackground() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e; // reported by the next mutation
+            }
+        } finally {
+            synchronized (this) {
+                checkpointQueued = false;
+            }
+        }
+    }
+
+    // Only the O(1) snapshot and the final log swap hold the tree's lock; the
+    // O(n) streaming of the keys does not
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            AVLTree snapshot;
+            long mark;
+            synchronized (this) {
+                if (!log.isOpen()) return;
+                flushLocked();
+                snapshot = tree.snapshot();
+                mark = log.position();
+                opsSinceCheckpoint = 0;
+            }
+
+            Path target = directory.resolve(SNAPSHOT_FILE);
+            Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer chunk = ByteBuffer.allocate(IO_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+                chunk.putInt(SNAPSHOT_MAGIC).putInt(snapshot.size());
+                PrimitiveIterator.OfInt keys = snapshot.iterator(TraversalOrder.IN_ORDER);
+                while (keys.hasNext()) {
+                    if (!chunk.hasRemaining()) writeChunk(out, chunk);
+                    chunk.putInt(keys.nextInt());
+                }
+                writeChunk(out, chunk);
+                out.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // The rename must be on disk before the log loses what it covers
+            forceDirectory();
+
+            synchronized (this) {
+                if (!log.isOpen()) return;
+                flushLocked();
+                replaceLog(mark);
+            }
+        }
+    }
+
+    // Swaps the log for a new file holding only the frames written after mark
+    private void replaceLog(long mark) throws IOException {
+        Path target = directory.resolve(LOG_FILE);
+        Path temporary = directory.resolve(LOG_FILE + ".tmp");
+        long length = log.size() - mark;
+        FileChannel tail = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            for (long copied = 0; copied < length; ) {
+                copied += log.transferTo(mark + copied, length - copied, tail);
+            }
+            tail.force(true);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory();
+        } catch (IOException e) {
+            tail.close();
+            throw e;
+        }
+        log.close();
+        log = tail;
+        log.position(length);
+    }
+
+    // Makes renames inside the directory durable
+    private void forceDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static void writeChunk(FileChannel out, ByteBuffer chunk) throws IOException {
+        chunk.flip();
+        while (chunk.hasRemaining()) {
+            out.write(chunk);
+        }
+        chunk.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        checkpointer.shutdown();
+        synchronized (checkpointLock) {
+            synchronized (this) {
+                try {
+                    sync();
+                } finally {
+                    log.close();
+                }
+            }
+        }
+    }
+}
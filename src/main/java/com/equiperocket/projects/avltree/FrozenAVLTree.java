@@ -0,0 +1,62 @@
+package com.equiperocket.projects.avltree;
+
+// Immutable search index built by AVLTree.freeze(). The keys are stored in a
+// single int[] in Eytzinger (breadth-first) order: the children of slot k are
+// slots 2k and 2k + 1, slot 0 is unused. A lookup walks down from slot 1 with
+// k = 2k + (keys[k] < key), which has no data-dependent branch for the JIT to
+// mispredict, and the first four levels share a cache line or two, so the top
+// of every search stays in cache. The slots of the next levels are contiguous,
+// which keeps the hardware prefetcher effective where Node pointers are not.
+public final class FrozenAVLTree {
+
+    private final int[] keys;
+    private final int size;
+
+    FrozenAVLTree(int[] sorted) {
+        size = sorted.length;
+        keys = new int[size + 1];
+        fill(sorted, 0, 1);
+    }
+
+    // Writes the sorted keys in in-order of the implicit tree rooted at slot
+    private int fill(int[] sorted, int index, int slot) {
+        if (slot <= size) {
+            index = fill(sorted, index, 2 * slot);
+            keys[slot] = sorted[index++];
+            index = fill(sorted, index, 2 * slot + 1);
+        }
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int value) {
+        int slot = lowerBound(value);
+        return slot != 0 && keys[slot] == value;
+    }
+
+    // Smallest key greater than or equal to the value, or null if there is none
+    public Integer ceiling(int value) {
+        int slot = lowerBound(value);
+        return slot != 0 ? keys[slot] : null;
+    }
+
+    // Slot of the smallest key >= value, or 0. The descent records each step as
+    // one bit of k; the last step that went left marks the answer, and shifting
+    // out the trailing right steps (ones) plus that left step recovers its slot.
+    private int lowerBound(int value) {
+        int[] keys = this.keys;
+        int n = size;
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (keys[k] < value ? 1 : 0);
+        }
+        return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+    }
+}
@@ -0,0 +1,256 @@
+package com.equiperocket.projects.avltree;
+
+import java.util.Arrays;
+
+// Same AVL algorithms as AVLTree, but nodes live in parallel primitive arrays
+// (struct-of-arrays) and links are int slot indices instead of references.
+// Slot 0 is a sentinel standing for "no node": its height is -1, so the
+// height/balance helpers need no null checks. Slots released by remove are
+// chained through the left array and handed out again by the next insert.
+public class IntAVLTree implements Tree<Integer, Integer> {
+
+    private static final int NIL = 0;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] keys;
+    private byte[] heights;
+    private int[] left;
+    private int[] right;
+
+    private int root;
+    private int size;
+    private int nextSlot;
+    private int freeHead;
+    private int rotationsCount;
+
+    public IntAVLTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntAVLTree(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1) + 1; // +1 for the sentinel
+        keys = new int[capacity];
+        heights = new byte[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        heights[NIL] = -1;
+        root = NIL;
+        size = 0;
+        nextSlot = 1;
+        freeHead = NIL;
+        rotationsCount = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int height() {
+        return heights[root];
+    }
+
+    public boolean contains(int value) {
+        int node = root;
+        while (node != NIL) {
+            int key = keys[node];
+            if (value == key) return true;
+            node = value < key ? left[node] : right[node];
+        }
+        return false;
+    }
+
+    private int newNode(int value) {
+        int slot;
+        if (freeHead != NIL) {
+            slot = freeHead;
+            freeHead = left[slot];
+        } else {
+            if (nextSlot == keys.length) grow();
+            slot = nextSlot++;
+        }
+        keys[slot] = value;
+        heights[slot] = 0;
+        left[slot] = right[slot] = NIL;
+        return slot;
+    }
+
+    private void freeNode(int slot) {
+        right[slot] = NIL;
+        left[slot] = freeHead;
+        freeHead = slot;
+    }
+
+    private void grow() {
+        int capacity = keys.length + (keys.length >> 1) + 1;
+        keys = Arrays.copyOf(keys, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+    }
+
+    private void updateHeight(int node) {
+        heights[node] = (byte) (Math.max(heights[left[node]], heights[right[node]]) + 1);
+    }
+
+    private int balanceFactor(int node) {
+        return heights[right[node]] - heights[left[node]];
+    }
+
+    // Left element of root now becomes root
+    private int rotateRight(int node) {
+        int l = left[node];
+        left[node] = right[l];
+        right[l] = node;
+
+        updateHeight(node);
+        updateHeight(l);
+
+        rotationsCount++;
+        return l;
+    }
+
+    // Right element of root now becomes root
+    private int rotateLeft(int node) {
+        int r = right[node];
+        right[node] = left[r];
+        left[r] = node;
+
+        updateHeight(node);
+        updateHeight(r);
+
+        rotationsCount++;
+        return r;
+    }
+
+    private int rebalance(int node) {
+        updateHeight(node);
+        int balance = balanceFactor(node);
+        if (balance > 1) {
+            if (balanceFactor(right[node]) < 0) {
+                right[node] = rotateRight(right[node]);
+            }
+            node = rotateLeft(node);
+        } else if (balance < -1) {
+            if (balanceFactor(left[node]) > 0) {
+                left[node] = rotateLeft(left[node]);
+            }
+            node = rotateRight(node);
+        }
+        return node;
+    }
+
+    @Override
+    public String insert(Integer value) throws RuntimeException {
+        rotationsCount = 0;
+        root = insertRecursive(root, value);
+        size++;
+        return "Rotations made in insertion: " + rotationsCount;
+    }
+
+    private int insertRecursive(int node, int value) {
+        if (node == NIL) return newNode(value);
+
+        // The child is read into a local first: newNode may grow (replace) the
+        // arrays, and "left[node] = ..." would otherwise store into the old array
+        if (value < keys[node]) {
+            int child = insertRecursive(left[node], value);
+            left[node] = child;
+        } else if (value > keys[node]) {
+            int child = insertRecursive(right[node], value);
+            right[node] = child;
+        } else {
+            throw new RuntimeException(String.format("Value %d already exists in the tree!", value));
+        }
+
+        return rebalance(node);
+    }
+
+    // Returns the value itself when present, mirroring AVLTree.find returning the node
+    @Override
+    public Integer find(Integer value) {
+        return contains(value) ? value : null;
+    }
+
+    @Override
+    public String remove(Integer value) throws RuntimeException {
+        rotationsCount = 0;
+        root = deleteRecursive(root, value);
+        size--;
+        return "Rotations made in removal: " + rotationsCount;
+    }
+
+    private int deleteRecursive(int node, int value) {
+        if (node == NIL) {
+            throw new RuntimeException(String.format("Value %d not found in the tree!", value));
+        }
+
+        if (value < keys[node]) {
+            left[node] = deleteRecursive(left[node], value);
+        } else if (value > keys[node]) {
+            right[node] = deleteRecursive(right[node], value);
+        } else {
+            if (left[node] == NIL || right[node] == NIL) {
+                int child = left[node] == NIL ? right[node] : left[node];
+                freeNode(node);
+                node = child;
+            } else {
+                // Same strategy as AVLTree: copy the smallest key of the right subtree up
+                int successor = right[node];
+                while (left[successor] != NIL) successor = left[successor];
+                keys[node] = keys[successor];
+                right[node] = deleteRecursive(right[node], keys[successor]);
+            }
+        }
+
+        return node != NIL ? rebalance(node) : NIL;
+    }
+
+    @Override
+    public String traverseInOrder() {
+        StringBuilder sb = new StringBuilder();
+        traverseInOrder(root, sb);
+        return sb.toString();
+    }
+
+    private void traverseInOrder(int node, StringBuilder sb) {
+        if (node != NIL) {
+            traverseInOrder(left[node], sb);
+            sb.append(keys[node]).append(' ');
+            traverseInOrder(right[node], sb);
+        }
+    }
+
+    @Override
+    public String traversePreOrder() {
+        StringBuilder sb = new StringBuilder();
+        traversePreOrder(root, sb);
+        return sb.toString();
+    }
+
+    private void traversePreOrder(int node, StringBuilder sb) {
+        if (node != NIL) {
+            sb.append(keys[node]).append(' ');
+            traversePreOrder(left[node], sb);
+            traversePreOrder(right[node], sb);
+        }
+    }
+
+    @Override
+    public String traversePostOrder() {
+        StringBuilder sb = new StringBuilder();
+        traversePostOrder(root, sb);
+        return sb.toString();
+    }
+
+    private void traversePostOrder(int node, StringBuilder sb) {
+        if (node != NIL) {
+            traversePostOrder(left[node], sb);
+            traversePostOrder(right[node], sb);
+            sb.append(keys[node]).append(' ');
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package com.equiperocket.projects.avltree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Write-optimized integer set in the style of a log-structured merge tree.
+// Writes go to an in-memory memtable: one AVLTree of inserted keys and one of
+// deleted keys (tombstones). When the memtable reaches its size limit it is
+// frozen and a background thread streams it, in order, into an immutable
+// sorted run file; a new memtable takes the writes meanwhile. Writers only
+// wait if the previous memtable has not been flushed yet.
+//
+// Runs are fixed 5-byte records (key, present/deleted) read through a
+// read-only mapping. Every INDEX_INTERVAL-th key is kept in a small in-heap
+// sparse index, so a lookup binary-searches the index and then one block of
+// the file. Runs are tiered by level: a flush makes a level 0 run, and when
+// fanIn runs share a level the background thread k-way merges them into one
+// run of the next level, the newest record winning for each key. Tombstones
+// are dropped once a merge reaches the oldest run.
+//
+// contains() consults the memtable, the frozen memtable and then the runs
+// newest to oldest, stopping at the first one that knows the key. Flushed
+// runs are found again by open(); the memtable itself is not logged, so
+// writes since the last flush are lost on a crash (see DurableAVLTree).
+public class LSMIndex implements Closeable {
+
+    private static final int RUN_MAGIC = 0x41564C52; // "AVLR"
+    private static final int HEADER_SIZE = 16; // magic, level, count, first sequence
+    private static final int RECORD_SIZE = 5;
+    private static final int INDEX_INTERVAL = 128;
+    private static final int IO_CHUNK = 1 << 16;
+    private static final String RUN_PREFIX = "run-";
+    private static final String RUN_SUFFIX = ".dat";
+
+    private static final byte ABSENT = 0;
+    private static final byte PRESENT = 1;
+    private static final byte DELETED = 2;
+
+    public static final int DEFAULT_MEMTABLE_LIMIT = 1 << 20;
+    public static final int DEFAULT_FAN_IN = 4;
+
+    private final Path directory;
+    private final int memtableLimit;
+    private final int fanIn;
+    private final ExecutorService background;
+
+    private Memtable active;
+    private Memtable frozen;
+    private volatile List<Run> runs; // newest first, never modified in place
+    private int nextSequence;
+    private IOException failure;
+
+    private LSMIndex(Path directory, int memtableLimit, int fanIn, List<Run> runs, int nextSequence) {
+        this.directory = directory;
+        this.memtableLimit = memtableLimit;
+        this.fanIn = fanIn;
+        this.runs = runs;
+        this.nextSequence = nextSequence;
+        active = new Memtable();
+        background = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lsm-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static LSMIndex open(Path directory) throws IOException {
+        return open(directory, DEFAULT_MEMTABLE_LIMIT, DEFAULT_FAN_IN);
+    }
+
+    public static LSMIndex open(Path directory, int memtableLimit, int fanIn) throws IOException {
+        if (memtableLimit < 1 || fanIn < 2) {
+            throw new IllegalArgumentException("Memtable limit must be positive and fan-in at least 2!");
+        }
+        Files.createDirectories(directory);
+        List<Run> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, RUN_PREFIX + "*" + RUN_SUFFIX)) {
+            for (Path file : files) {
+                found.add(Run.open(file, sequenceOf(file)));
+            }
+        }
+        found.sort(Comparator.comparingInt((Run run) -> run.sequence).reversed());
+
+        // A crash after a merge but before its inputs were deleted leaves runs
+        // that a newer run already covers; they are obsolete
+        List<Run> live = new ArrayList<>();
+        int covered = Integer.MAX_VALUE;
+        for (Run run : found) {
+            if (run.sequence >= covered) {
+                Files.deleteIfExists(run.file);
+                continue;
+            }
+            live.add(run);
+            covered = run.firstSequence;
+        }
+        int nextSequence = found.isEmpty() ? 0 : found.get(0).sequence + 1;
+        return new LSMIndex(directory, memtableLimit, fanIn, List.copyOf(live), nextSequence);
+    }
+
+    private static int sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(RUN_PREFIX.length(), name.length() - RUN_SUFFIX.length()));
+    }
+
+    private Path runFile(int sequence) {
+        return directory.resolve(String.format("%s%08d%s", RUN_PREFIX, sequence, RUN_SUFFIX));
+    }
+
+    // ---- Reads and writes ----
+
+    public synchronized void insert(int key) {
+        checkFailure();
+        active.deleted.removeKey(key);
+        active.present.insertKey(key);
+        if (active.size() >= memtableLimit) freeze();
+    }
+
+    public synchronized void remove(int key) {
+        checkFailure();
+        active.present.removeKey(key);
+        active.deleted.insertKey(key);
+        if (active.size() >= memtableLimit) freeze();
+    }
+
+    public boolean contains(int key) {
+        List<Run> current;
+        synchronized (this) {
+            byte state = active.lookup(key);
+            if (state == ABSENT && frozen != null) state = frozen.lookup(key);
+            if (state != ABSENT) return state == PRESENT;
+            current = runs;
+        }
+        // Runs are immutable, so they are searched without holding the lock
+        for (Run run : current) {
+            byte state = run.lookup(key);
+            if (state != ABSENT) return state == PRESENT;
+        }
+        return false;
+    }
+
+    public int runCount() {
+        return runs.size();
+    }
+
+    // Flushes the memtable to a run and waits until it is on disk
+    public synchronized void flush() throws IOException {
+        if (active.size() > 0) freeze();
+        awaitFlush();
+        if (failure != null) throw failure;
+    }
+
+    private void checkFailure() {
+        if (failure != null) throw new UncheckedIOException("Background flush or compaction failed", failure);
+    }
+
+    // Caller holds the lock
+    private void freeze() {
+        awaitFlush();
+        checkFailure();
+        frozen = active;
+        active = new Memtable();
+        background.execute(this::flushFrozen);
+    }
+
+    private void awaitFlush() {
+        try {
+            while (frozen != null && failure == null) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a memtable flush", e);
+        }
+    }
+
+    // ---- Background work ----
+
+    private void flushFrozen() {
+        try {
+            Memtable memtable;
+            synchronized (this) {
+                memtable = frozen;
+            }
+            int sequence = nextSequence++;
+            Run run = memtable.writeTo(runFile(sequence), sequence);
+
+            List<Run> updated = new ArrayList<>(runs.size() + 1);
+            updated.add(run);
+            updated.addAll(runs);
+            synchronized (this) {
+                runs = List.copyOf(updated);
+                frozen = null;
+                notifyAll();
+            }
+            compact();
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+                notifyAll();
+            }
+        }
+    }
+
+    // Merges the newest group of fanIn runs sharing a level, as long as there is one.
+    // Levels never decrease from newest to oldest, so such a group is contiguous.
+    private void compact() throws IOException {
+        while (true) {
+            List<Run> current = runs;
+            int start = -1;
+            for (int i = 0; i + fanIn <= current.size(); i++) {
+                if (current.get(i).level == current.get(i + fanIn - 1).level) {
+                    start = i;
+                    break;
+                }
+            }
+            if (start < 0) return;
+
+            List<Run> inputs = current.subList(start, start + fanIn);
+            boolean bottom = start + fanIn == current.size();
+            Run merged = merge(inputs, bottom);
+
+            // Only this thread changes the run list, so the positions still hold
+            List<Run> updated = new ArrayList<>(current.subList(0, start));
+            updated.add(merged);
+            updated.addAll(current.subList(start + fanIn, current.size()));
+            runs = List.copyOf(updated);
+            // The newest input's file now holds the merged run
+            for (Run input : inputs.subList(1, fanIn)) {
+                Files.deleteIfExists(input.file);
+            }
+        }
+    }
+
+    // K-way merge of runs ordered newest first. The merged run keeps the sequence
+    // of the newest input, so it takes that run's place in the ordering.
+    private Run merge(List<Run> inputs, boolean bottom) throws IOException {
+        PriorityQueue<RunCursor> heap = new PriorityQueue<>();
+        for (int age = 0; age < inputs.size(); age++) {
+            RunCursor cursor = new RunCursor(inputs.get(age), age);
+            if (cursor.hasCurrent()) heap.add(cursor);
+        }
+
+        Run newest = inputs.get(0);
+        Run oldest = inputs.get(inputs.size() - 1);
+        Path temporary = directory.resolve(newest.file.getFileName() + ".tmp");
+        try (RunWriter writer = new RunWriter(temporary, newest.level + 1, oldest.firstSequence)) {
+            while (!heap.isEmpty()) {
+                RunCursor winner = heap.poll();
+                int key = winner.key;
+                byte state = winner.state;
+                advance(heap, winner);
+                // Older records for the same key are shadowed by the winner
+                while (!heap.isEmpty() && heap.peek().key == key) {
+                    advance(heap, heap.poll());
+                }
+                if (state == PRESENT || !bottom) writer.write(key, state);
+            }
+        }
+        Files.move(temporary, newest.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Run.open(newest.file, newest.sequence);
+    }
+
+    private static void advance(PriorityQueue<RunCursor> heap, RunCursor cursor) {
+        cursor.next();
+        if (cursor.hasCurrent()) heap.add(cursor);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            background.shutdown();
+            try {
+                background.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    // ---- Memtable ----
+
+    private static final class Memtable {
+        final AVLTree present = new AVLTree();
+        final AVLTree deleted = new AVLTree();
+
+        int size() {
+            return present.size() + deleted.size();
+        }
+
+        byte lookup(int key) {
+            if (present.contains(key)) return PRESENT;
+            if (deleted.contains(key)) return DELETED;
+            return ABSENT;
+        }
+
+        // Streams both trees in order, merging them into a single sorted run
+        Run writeTo(Path file, int sequence) throws IOException {
+            PrimitiveIterator.OfInt presentKeys = present.iterator(TraversalOrder.IN_ORDER);
+            PrimitiveIterator.OfInt deletedKeys = deleted.iterator(TraversalOrder.IN_ORDER);
+            try (RunWriter writer = new RunWriter(file, 0, sequence)) {
+                int p = presentKeys.hasNext() ? presentKeys.nextInt() : 0;
+                int d = deletedKeys.hasNext() ? deletedKeys.nextInt() : 0;
+                boolean hasP = present.size() > 0;
+                boolean hasD = deleted.size() > 0;
+                while (hasP || hasD) {
+                    if (hasP && (!hasD || p < d)) {
+                        writer.write(p, PRESENT);
+                        hasP = presentKeys.hasNext();
+                        if (hasP) p = presentKeys.nextInt();
+                    } else {
+                        writer.write(d, DELETED);
+                        hasD = deletedKeys.hasNext();
+                        if (hasD) d = deletedKeys.nextInt();
+                    }
+                }
+            }
+            return Run.open(file, sequence);
+        }
+    }
+
+    // ---- Run files ----
+
+    private static final class Run {
+        final Path file;
+        final int sequence;
+        final int level;
+        final int count;
+        final int firstSequence; // oldest flush merged into this run
+        final MappedByteBuffer records;
+        final int[] index; // every INDEX_INTERVAL-th key
+
+        private Run(Path file, int sequence, int level, int count, int firstSequence, MappedByteBuffer records) {
+            this.file = file;
+            this.sequence = sequence;
+            this.level = level;
+            this.count = count;
+            this.firstSequence = firstSequence;
+            this.records = records;
+            index = new int[(count + INDEX_INTERVAL - 1) / INDEX_INTERVAL];
+            for (int i = 0; i < index.length; i++) {
+                index[i] = key(i * INDEX_INTERVAL);
+            }
+        }
+
+        static Run open(Path file, int sequence) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                if (channel.size() < HEADER_SIZE || buffer.getInt(0) != RUN_MAGIC) {
+                    throw new IOException("Not a run file: " + file);
+                }
+                int count = buffer.getInt(8);
+                if (channel.size() != HEADER_SIZE + (long) count * RECORD_SIZE) {
+                    throw new IOException("Truncated run file: " + file);
+                }
+                return new Run(file, sequence, buffer.getInt(4), count, buffer.getInt(12), buffer);
+            }
+        }
+
+        int key(int record) {
+            return records.getInt(HEADER_SIZE + record * RECORD_SIZE);
+        }
+
+        byte state(int record) {
+            return records.get(HEADER_SIZE + record * RECORD_SIZE + Integer.BYTES);
+        }
+
+        byte lookup(int key) {
+            // Last index entry not greater than the key picks the block
+            int lo = 0;
+            int hi = index.length - 1;
+            if (hi < 0 || key < index[0]) return ABSENT;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (index[mid] <= key) lo = mid; else hi = mid - 1;
+            }
+
+            int from = lo * INDEX_INTERVAL;
+            int to = Math.min(count, from + INDEX_INTERVAL) - 1;
+            while (from <= to) {
+                int mid = (from + to) >>> 1;
+                int k = key(mid);
+                if (k == key) return state(mid);
+                if (k < key) from = mid + 1; else to = mid - 1;
+            }
+            return ABSENT;
+        }
+    }
+
+    private static final class RunCursor implements Comparable<RunCursor> {
+        final Run run;
+        final int age; // 0 is the newest input
+        int position;
+        int key;
+        byte state;
+
+        RunCursor(Run run, int age) {
+            this.run = run;
+            this.age = age;
+            position = -1;
+            next();
+        }
+
+        boolean hasCurrent() {
+            return position < run.count;
+        }
+
+        void next() {
+            if (++position < run.count) {
+                key = run.key(position);
+                state = run.state(position);
+            }
+        }
+
+        @Override
+        public int compareTo(RunCursor other) {
+            int byKey = Integer.compare(key, other.key);
+            return byKey != 0 ? byKey : Integer.compare(age, other.age);
+        }
+    }
+
+    // Buffers records in chunks and fills in the header count on close
+    private static final class RunWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer chunk;
+        private int count;
+
+        RunWriter(Path file, int level, int firstSequence) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            chunk = ByteBuffer.allocate(IO_CHUNK - IO_CHUNK % RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            chunk.putInt(RUN_MAGIC).putInt(level).putInt(0).putInt(firstSequence);
+            count = 0;
+        }
+
+        void write(int key, byte state) throws IOException {
+            if (chunk.remaining() < RECORD_SIZE) drain();
+            chunk.putInt(key).put(state);
+            count++;
+        }
+
+        private void drain() throws IOException {
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+            chunk.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+                ByteBuffer header = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(0, count);
+                channel.write(header, 8);
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
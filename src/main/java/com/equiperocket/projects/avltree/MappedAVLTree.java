@@ -0,0 +1,379 @@
+package com.equiperocket.projects.avltree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// AVL tree stored in a memory-mapped file, the on-disk sibling of IntAVLTree.
+// Nodes are fixed 16-byte records (key, left, right, height) addressed by
+// record number, and record 0 is the "no node" sentinel with height -1. The
+// header keeps the root, size and allocation state, so opening an existing
+// file only reads those few fields: lookups then run straight against the
+// page cache, and the tree may grow far beyond the Java heap.
+//
+// A single mapping is used, which caps the file at 2 GiB (about 134M keys).
+// Changes reach the file through the OS page cache; call force() to flush
+// them to disk. The format is not crash-atomic on its own.
+public class MappedAVLTree implements Tree<Integer, Integer>, Closeable {
+
+    private static final int MAGIC = 0x41564C31; // "AVL1"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int ROOT_OFFSET = 8;
+    private static final int SIZE_OFFSET = 12;
+    private static final int NEXT_RECORD_OFFSET = 16;
+    private static final int FREE_HEAD_OFFSET = 20;
+
+    private static final int RECORD_SIZE = 16;
+    private static final int KEY = 0;
+    private static final int LEFT = 4;
+    private static final int RIGHT = 8;
+    private static final int HEIGHT = 12;
+
+    private static final int NIL = 0;
+    private static final int INITIAL_RECORDS = 1 << 10;
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity; // in records
+
+    private int root;
+    private int size;
+    private int nextRecord;
+    private int freeHead;
+    private int rotationsCount;
+
+    private MappedAVLTree(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    // Opens the tree stored in the file, creating an empty one if it does not exist
+    public static MappedAVLTree open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedAVLTree tree = new MappedAVLTree(channel);
+        try {
+            if (channel.size() == 0) {
+                tree.format();
+            } else {
+                tree.load();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return tree;
+    }
+
+    public static MappedAVLTree open(String file) throws IOException {
+        return open(Path.of(file));
+    }
+
+    private void format() throws IOException {
+        map(INITIAL_RECORDS);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        root = NIL;
+        size = 0;
+        nextRecord = 1;
+        freeHead = NIL;
+        setHeight(NIL, -1);
+        writeHeader();
+    }
+
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE + RECORD_SIZE || fileSize > MAX_FILE_SIZE) {
+            throw new IOException("Not an AVL tree file (unexpected size " + fileSize + ")");
+        }
+        map((int) ((fileSize - HEADER_SIZE) / RECORD_SIZE));
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("Not an AVL tree file (bad magic or version)");
+        }
+        root = buffer.getInt(ROOT_OFFSET);
+        size = buffer.getInt(SIZE_OFFSET);
+        nextRecord = buffer.getInt(NEXT_RECORD_OFFSET);
+        freeHead = buffer.getInt(FREE_HEAD_OFFSET);
+    }
+
+    private void map(int records) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) records * RECORD_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        capacity = records;
+    }
+
+    private void grow() {
+        long maxRecords = (MAX_FILE_SIZE - HEADER_SIZE) / RECORD_SIZE;
+        if (capacity >= maxRecords) {
+            throw new IllegalStateException("The tree file reached its maximum size!");
+        }
+        try {
+            map((int) Math.min((long) capacity * 2, maxRecords));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not grow the tree file", e);
+        }
+    }
+
+    private void writeHeader() {
+        buffer.putInt(ROOT_OFFSET, root);
+        buffer.putInt(SIZE_OFFSET, size);
+        buffer.putInt(NEXT_RECORD_OFFSET, nextRecord);
+        buffer.putInt(FREE_HEAD_OFFSET, freeHead);
+    }
+
+    public void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeHeader();
+        buffer.force();
+        channel.close();
+    }
+
+    private static int offset(int record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    private int key(int node) {
+        return buffer.getInt(offset(node) + KEY);
+    }
+
+    private int left(int node) {
+        return buffer.getInt(offset(node) + LEFT);
+    }
+
+    private int right(int node) {
+        return buffer.getInt(offset(node) + RIGHT);
+    }
+
+    private int height(int node) {
+        return buffer.getInt(offset(node) + HEIGHT);
+    }
+
+    private void setKey(int node, int key) {
+        buffer.putInt(offset(node) + KEY, key);
+    }
+
+    private void setLeft(int node, int child) {
+        buffer.putInt(offset(node) + LEFT, child);
+    }
+
+    private void setRight(int node, int child) {
+        buffer.putInt(offset(node) + RIGHT, child);
+    }
+
+    private void setHeight(int node, int height) {
+        buffer.putInt(offset(node) + HEIGHT, height);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int value) {
+        int node = root;
+        while (node != NIL) {
+            int key = key(node);
+            if (value == key) return true;
+            node = value < key ? left(node) : right(node);
+        }
+        return false;
+    }
+
+    private int newNode(int value) {
+        int node;
+        if (freeHead != NIL) {
+            node = freeHead;
+            freeHead = left(node);
+        } else {
+            if (nextRecord == capacity) grow();
+            node = nextRecord++;
+        }
+        setKey(node, value);
+        setLeft(node, NIL);
+        setRight(node, NIL);
+        setHeight(node, 0);
+        return node;
+    }
+
+    private void freeNode(int node) {
+        setRight(node, NIL);
+        setLeft(node, freeHead);
+        freeHead = node;
+    }
+
+    private void updateHeight(int node) {
+        setHeight(node, Math.max(height(left(node)), height(right(node))) + 1);
+    }
+
+    private int balanceFactor(int node) {
+        return height(right(node)) - height(left(node));
+    }
+
+    // Left element of root now becomes root
+    private int rotateRight(int node) {
+        int l = left(node);
+        setLeft(node, right(l));
+        setRight(l, node);
+
+        updateHeight(node);
+        updateHeight(l);
+
+        rotationsCount++;
+        return l;
+    }
+
+    // Right element of root now becomes root
+    private int rotateLeft(int node) {
+        int r = right(node);
+        setRight(node, left(r));
+        setLeft(r, node);
+
+        updateHeight(node);
+        updateHeight(r);
+
+        rotationsCount++;
+        return r;
+    }
+
+    private int rebalance(int node) {
+        updateHeight(node);
+        int balance = balanceFactor(node);
+        if (balance > 1) {
+            if (balanceFactor(right(node)) < 0) {
+                setRight(node, rotateRight(right(node)));
+            }
+            node = rotateLeft(node);
+        } else if (balance < -1) {
+            if (balanceFactor(left(node)) > 0) {
+                setLeft(node, rotateLeft(left(node)));
+            }
+            node = rotateRight(node);
+        }
+        return node;
+    }
+
+    @Override
+    public String insert(Integer value) throws RuntimeException {
+        rotationsCount = 0;
+        root = insertRecursive(root, value);
+        size++;
+        writeHeader();
+        return "Rotations made in insertion: " + rotationsCount;
+    }
+
+    private int insertRecursive(int node, int value) {
+        if (node == NIL) return newNode(value);
+
+        int key = key(node);
+        if (value < key) {
+            setLeft(node, insertRecursive(left(node), value));
+        } else if (value > key) {
+            setRight(node, insertRecursive(right(node), value));
+        } else {
+            throw new RuntimeException(String.format("Value %d already exists in the tree!", value));
+        }
+
+        return rebalance(node);
+    }
+
+    // Returns the value itself when present, like IntAVLTree.find
+    @Override
+    public Integer find(Integer value) {
+        return contains(value) ? value : null;
+    }
+
+    @Override
+    public String remove(Integer value) throws RuntimeException {
+        rotationsCount = 0;
+        root = deleteRecursive(root, value);
+        size--;
+        writeHeader();
+        return "Rotations made in removal: " + rotationsCount;
+    }
+
+    private int deleteRecursive(int node, int value) {
+        if (node == NIL) {
+            throw new RuntimeException(String.format("Value %d not found in the tree!", value));
+        }
+
+        int key = key(node);
+        if (value < key) {
+            setLeft(node, deleteRecursive(left(node), value));
+        } else if (value > key) {
+            setRight(node, deleteRecursive(right(node), value));
+        } else {
+            if (left(node) == NIL || right(node) == NIL) {
+                int child = left(node) == NIL ? right(node) : left(node);
+                freeNode(node);
+                node = child;
+            } else {
+                int successor = right(node);
+                while (left(successor) != NIL) successor = left(successor);
+                setKey(node, key(successor));
+                setRight(node, deleteRecursive(right(node), key(successor)));
+            }
+        }
+
+        return node != NIL ? rebalance(node) : NIL;
+    }
+
+    @Override
+    public String traverseInOrder() {
+        StringBuilder sb = new StringBuilder();
+        traverseInOrder(root, sb);
+        return sb.toString();
+    }
+
+    private void traverseInOrder(int node, StringBuilder sb) {
+        if (node != NIL) {
+            traverseInOrder(left(node), sb);
+            sb.append(key(node)).append(' ');
+            traverseInOrder(right(node), sb);
+        }
+    }
+
+    @Override
+    public String traversePreOrder() {
+        StringBuilder sb = new StringBuilder();
+        traversePreOrder(root, sb);
+        return sb.toString();
+    }
+
+    private void traversePreOrder(int node, StringBuilder sb) {
+        if (node != NIL) {
+            sb.append(key(node)).append(' ');
+            traversePreOrder(left(node), sb);
+            traversePreOrder(right(node), sb);
+        }
+    }
+
+    @Override
+    public String traversePostOrder() {
+        StringBuilder sb = new StringBuilder();
+        traversePostOrder(root, sb);
+        return sb.toString();
+    }
+
+    private void traversePostOrder(int node, StringBuilder sb) {
+        if (node != NIL) {
+            traversePostOrder(left(node), sb);
+            traversePostOrder(right(node), sb);
+            sb.append(key(node)).append(' ');
+        }
+    }
+}
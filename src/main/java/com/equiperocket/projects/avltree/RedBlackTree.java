@@ -0,0 +1,252 @@
+package com.equiperocket.projects.avltree;
+
+// Left-leaning red-black tree (Sedgewick), the red-black encoding of a 2-3
+// tree in which red links always lean left. Balance is looser than AVL
+// (height at most 2 * log2(n)), which makes insertions cheap; deletions push a
+// red link down the search path and fix it on the way up, so they rotate more
+// than the other engines.
+public class RedBlackTree implements BinaryTree<RedBlackTree.Node> {
+
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
+    private Node root;
+    private int size;
+    private int rotationsCount;
+    // Whether the running insert added a node
+    private boolean changed;
+
+    public RedBlackTree() {
+        root = null;
+        size = 0;
+        rotationsCount = 0;
+    }
+
+    @Override
+    public Node getRoot() {
+        return root;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getLastRotationsCount() {
+        return rotationsCount;
+    }
+
+    // O(n): copies every node
+    @Override
+    public RedBlackTree snapshot() {
+        RedBlackTree copy = new RedBlackTree();
+        copy.root = copy(root);
+        copy.size = size;
+        return copy;
+    }
+
+    private static Node copy(Node node) {
+        if (node == null) return null;
+        Node copy = new Node(node.value, node.color);
+        copy.left = copy(node.left);
+        copy.right = copy(node.right);
+        return copy;
+    }
+
+    private static boolean isRed(Node node) {
+        return node != null && node.color == RED;
+    }
+
+    // Left element of root now becomes root
+    private Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        left.color = node.color;
+        node.color = RED;
+        rotationsCount++;
+        return left;
+    }
+
+    // Right element of root now becomes root
+    private Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        right.color = node.color;
+        node.color = RED;
+        rotationsCount++;
+        return right;
+    }
+
+    // Splits or joins a temporary 4-node
+    private static void flipColors(Node node) {
+        node.color = !node.color;
+        node.left.color = !node.left.color;
+        node.right.color = !node.right.color;
+    }
+
+    // Restores the left-leaning invariants on the way up
+    private Node balance(Node node) {
+        if (isRed(node.right) && !isRed(node.left)) node = rotateLeft(node);
+        if (isRed(node.left) && isRed(node.left.left)) node = rotateRight(node);
+        if (isRed(node.left) && isRed(node.right)) flipColors(node);
+        return node;
+    }
+
+    @Override
+    public String insert(Integer value) throws RuntimeException {
+        if (!insertKey(value)) {
+            throw new RuntimeException(String.format("Value %d already exists in the tree!", value));
+        }
+        return "Rotations made in insertion: " + rotationsCount;
+    }
+
+    @Override
+    public boolean insertKey(int value) {
+        rotationsCount = 0;
+        changed = false;
+        root = insertRecursive(root, value);
+        root.color = BLACK;
+        if (changed) size++;
+        return changed;
+    }
+
+    private Node insertRecursive(Node node, int value) {
+        if (node == null) {
+            changed = true;
+            return new Node(value, RED);
+        }
+
+        if (value < node.value) {
+            node.left = insertRecursive(node.left, value);
+        } else if (value > node.value) {
+            node.right = insertRecursive(node.right, value);
+        } else {
+            // Already present, the path above is left as it was
+            return node;
+        }
+        return balance(node);
+    }
+
+    @Override
+    public Node find(Integer value) {
+        Node node = root;
+        while (node != null && value != node.value) {
+            node = value < node.value ? node.left : node.right;
+        }
+        return node;
+    }
+
+    @Override
+    public boolean contains(int value) {
+        return find(value) != null;
+    }
+
+    @Override
+    public String remove(Integer value) throws RuntimeException {
+        if (!removeKey(value)) {
+            throw new RuntimeException(String.format("Value %d not found in the tree!", value));
+        }
+        return "Rotations made in removal: " + rotationsCount;
+    }
+
+    @Override
+    public boolean removeKey(int value) {
+        rotationsCount = 0;
+        // The top-down pass below restructures the path, so it may only start
+        // once the key is known to be present
+        if (!contains(value)) return false;
+        if (!isRed(root.left) && !isRed(root.right)) root.color = RED;
+        root = deleteRecursive(root, value);
+        if (root != null) root.color = BLACK;
+        size--;
+        return true;
+    }
+
+    private Node deleteRecursive(Node node, int value) {
+        if (value < node.value) {
+            if (!isRed(node.left) && !isRed(node.left.left)) node = moveRedLeft(node);
+            node.left = deleteRecursive(node.left, value);
+        } else {
+            if (isRed(node.left)) node = rotateRight(node);
+            if (value == node.value && node.right == null) return null;
+            if (!isRed(node.right) && !isRed(node.right.left)) node = moveRedRight(node);
+            if (value == node.value) {
+                // Take the smallest value in the RIGHT subtree to replace the removed one
+                Node successor = node.right;
+                while (successor.left != null) successor = successor.left;
+                node.value = successor.value;
+                node.right = deleteMin(node.right);
+            } else {
+                node.right = deleteRecursive(node.right, value);
+            }
+        }
+        return balance(node);
+    }
+
+    private Node deleteMin(Node node) {
+        if (node.left == null) return null;
+        if (!isRed(node.left) && !isRed(node.left.left)) node = moveRedLeft(node);
+        node.left = deleteMin(node.left);
+        return balance(node);
+    }
+
+    // Makes node.left or one of its children red, borrowing from the right
+    private Node moveRedLeft(Node node) {
+        flipColors(node);
+        if (isRed(node.right.left)) {
+            node.right = rotateRight(node.right);
+            node = rotateLeft(node);
+            flipColors(node);
+        }
+        return node;
+    }
+
+    // Makes node.right or one of its children red, borrowing from the left
+    private Node moveRedRight(Node node) {
+        flipColors(node);
+        if (isRed(node.left.left)) {
+            node = rotateRight(node);
+            flipColors(node);
+        }
+        return node;
+    }
+
+    public static final class Node implements TreeNode {
+        private int value;
+        private boolean color;
+        private Node left;
+        private Node right;
+
+        private Node(int value, boolean color) {
+            this.value = value;
+            this.color = color;
+        }
+
+        @Override
+        public int getValue() {
+            return value;
+        }
+
+        public boolean isRed() {
+            return color == RED;
+        }
+
+        @Override
+        public Node getLeft() {
+            return left;
+        }
+
+        @Override
+        public Node getRight() {
+            return right;
+        }
+
+        @Override
+        public String toString() {
+            return "Node of value " + value + (color == RED ? " (red)" : " (black)");
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.equiperocket.projects.avltree;
+
+/**
+ * The order in which a traversal visits the nodes of a binary tree.
+ */
+public enum TraversalOrder {
+    /** Left subtree, node, right subtree (ascending key order). */
+    IN_ORDER,
+    /** Node, left subtree, right subtree. */
+    PRE_ORDER,
+    /** Left subtree, right subtree, node. */
+    POST_ORDER
+}
@@ -0,0 +1,209 @@
+package com.equiperocket.projects.avltree;
+
+import java.util.SplittableRandom;
+
+// Randomized treap: a search tree on the keys that is also a max-heap on random
+// priorities drawn at insertion. The shape is that of a random BST whatever
+// the key order, so the expected depth is O(log n), and an update makes fewer
+// than two rotations in expectation. Nothing but the priority is stored.
+public class Treap implements BinaryTree<Treap.Node> {
+
+    private final SplittableRandom random;
+    private Node root;
+    private int size;
+    private int rotationsCount;
+    // Whether the running insert or remove changed the tree
+    private boolean changed;
+
+    public Treap() {
+        this(new SplittableRandom());
+    }
+
+    // Same seed and same operations give the same shape
+    public Treap(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private Treap(SplittableRandom random) {
+        this.random = random;
+        root = null;
+        size = 0;
+        rotationsCount = 0;
+    }
+
+    @Override
+    public Node getRoot() {
+        return root;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getLastRotationsCount() {
+        return rotationsCount;
+    }
+
+    // O(n): copies every node
+    @Override
+    public Treap snapshot() {
+        Treap copy = new Treap(random.split());
+        copy.root = copy(root);
+        copy.size = size;
+        return copy;
+    }
+
+    private static Node copy(Node node) {
+        if (node == null) return null;
+        Node copy = new Node(node.value, node.priority);
+        copy.left = copy(node.left);
+        copy.right = copy(node.right);
+        return copy;
+    }
+
+    // Left element of root now becomes root
+    private Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        rotationsCount++;
+        return left;
+    }
+
+    // Right element of root now becomes root
+    private Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        rotationsCount++;
+        return right;
+    }
+
+    @Override
+    public String insert(Integer value) throws RuntimeException {
+        if (!insertKey(value)) {
+            throw new RuntimeException(String.format("Value %d already exists in the tree!", value));
+        }
+        return "Rotations made in insertion: " + rotationsCount;
+    }
+
+    @Override
+    public boolean insertKey(int value) {
+        rotationsCount = 0;
+        changed = false;
+        root = insertRecursive(root, value);
+        if (changed) size++;
+        return changed;
+    }
+
+    // Inserts as a leaf, then rotates the new node up while it outranks its parent
+    private Node insertRecursive(Node node, int value) {
+        if (node == null) {
+            changed = true;
+            return new Node(value, random.nextInt());
+        }
+
+        if (value < node.value) {
+            node.left = insertRecursive(node.left, value);
+            if (node.left.priority > node.priority) node = rotateRight(node);
+        } else if (value > node.value) {
+            node.right = insertRecursive(node.right, value);
+            if (node.right.priority > node.priority) node = rotateLeft(node);
+        }
+        return node;
+    }
+
+    @Override
+    public Node find(Integer value) {
+        Node node = root;
+        while (node != null && value != node.value) {
+            node = value < node.value ? node.left : node.right;
+        }
+        return node;
+    }
+
+    @Override
+    public boolean contains(int value) {
+        return find(value) != null;
+    }
+
+    @Override
+    public String remove(Integer value) throws RuntimeException {
+        if (!removeKey(value)) {
+            throw new RuntimeException(String.format("Value %d not found in the tree!", value));
+        }
+        return "Rotations made in removal: " + rotationsCount;
+    }
+
+    @Override
+    public boolean removeKey(int value) {
+        rotationsCount = 0;
+        changed = false;
+        root = deleteRecursive(root, value);
+        if (changed) size--;
+        return changed;
+    }
+
+    // Rotates the node down, lifting its higher-priority child, until it has at
+    // most one child and can be unlinked
+    private Node deleteRecursive(Node node, int value) {
+        if (node == null) return null;
+
+        if (value < node.value) {
+            node.left = deleteRecursive(node.left, value);
+        } else if (value > node.value) {
+            node.right = deleteRecursive(node.right, value);
+        } else if (node.left == null) {
+            changed = true;
+            return node.right;
+        } else if (node.right == null) {
+            changed = true;
+            return node.left;
+        } else if (node.left.priority > node.right.priority) {
+            node = rotateRight(node);
+            node.right = deleteRecursive(node.right, value);
+        } else {
+            node = rotateLeft(node);
+            node.left = deleteRecursive(node.left, value);
+        }
+        return node;
+    }
+
+    public static final class Node implements TreeNode {
+        private final int value;
+        private final int priority;
+        private Node left;
+        private Node right;
+
+        private Node(int value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+
+        @Override
+        public int getValue() {
+            return value;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public Node getLeft() {
+            return left;
+        }
+
+        @Override
+        public Node getRight() {
+            return right;
+        }
+
+        @Override
+        public String toString() {
+            return "Node of value " + value + " with priority " + priority;
+        }
+    }
+}
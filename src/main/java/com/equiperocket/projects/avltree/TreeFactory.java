@@ -0,0 +1,42 @@
+package com.equiperocket.projects.avltree;
+
+import java.util.List;
+import java.util.Locale;
+
+// Creates the tree engines by name, so the console and the visualizer can run
+// on any of them. Pick by workload: "wavl" rotates least on deletes, "rb"
+// inserts cheaply, "treap" needs no balance bookkeeping and "avl" keeps the
+// shortest paths for lookups (and has O(1) snapshots and order statistics).
+public final class TreeFactory {
+
+    public static final String DEFAULT_ENGINE = "avl";
+
+    private static final List<String> ENGINES = List.of("avl", "wavl", "rb", "treap");
+
+    private TreeFactory() {
+    }
+
+    public static List<String> engines() {
+        return ENGINES;
+    }
+
+    public static BinaryTree<?> create(String engine) {
+        return switch (engine.toLowerCase(Locale.ROOT)) {
+            case "avl" -> new AVLTree();
+            case "wavl" -> new WAVLTree();
+            case "rb" -> new RedBlackTree();
+            case "treap" -> new Treap();
+            default -> throw new IllegalArgumentException(
+                    String.format("Unknown tree engine %s! Available: %s", engine, String.join(", ", ENGINES)));
+        };
+    }
+
+    // Name of the engine of a tree created by this factory
+    public static String engineOf(BinaryTree<?> tree) {
+        if (tree instanceof AVLTree) return "avl";
+        if (tree instanceof WAVLTree) return "wavl";
+        if (tree instanceof RedBlackTree) return "rb";
+        if (tree instanceof Treap) return "treap";
+        throw new IllegalArgumentException("Not a tree created by TreeFactory: " + tree.getClass().getName());
+    }
+}
@@ -0,0 +1,22 @@
+package com.equiperocket.projects.avltree;
+
+/**
+ * A read-only view of a node in a binary search tree, shared by every engine.
+ */
+public interface TreeNode {
+
+    /**
+     * @return The key stored in this node
+     */
+    int getValue();
+
+    /**
+     * @return The root of the left subtree, or null
+     */
+    TreeNode getLeft();
+
+    /**
+     * @return The root of the right subtree, or null
+     */
+    TreeNode getRight();
+}
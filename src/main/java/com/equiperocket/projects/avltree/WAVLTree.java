@@ -0,0 +1,308 @@
+package com.equiperocket.projects.avltree;
+
+// Weak AVL tree (rank-balanced, Haeupler, Sen and Tarjan). Every node has a
+// rank, a missing child has rank -1, and the rank difference between a node
+// and each child is 1 or 2; leaves have rank 0. Built by insertions only it is
+// exactly an AVL tree, but deletions relax it: instead of restoring heights
+// all the way up, they mostly demote ranks and make at most two rotations, so
+// delete-heavy workloads rotate far less than with AVLTree. The height stays
+// below 2 * log2(n).
+public class WAVLTree implements BinaryTree<WAVLTree.Node> {
+
+    private Node root;
+    private int size;
+    private int rotationsCount;
+    // Whether the running insert or remove changed the tree
+    private boolean changed;
+
+    public WAVLTree() {
+        root = null;
+        size = 0;
+        rotationsCount = 0;
+    }
+
+    @Override
+    public Node getRoot() {
+        return root;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getLastRotationsCount() {
+        return rotationsCount;
+    }
+
+    // O(n): copies every node
+    @Override
+    public WAVLTree snapshot() {
+        WAVLTree copy = new WAVLTree();
+        copy.root = copy(root);
+        copy.size = size;
+        return copy;
+    }
+
+    private static Node copy(Node node) {
+        if (node == null) return null;
+        Node copy = new Node(node.value);
+        copy.rank = node.rank;
+        copy.left = copy(node.left);
+        copy.right = copy(node.right);
+        return copy;
+    }
+
+    private static int rank(Node node) {
+        return node != null ? node.rank : -1;
+    }
+
+    // Left element of root now becomes root
+    private Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        rotationsCount++;
+        return left;
+    }
+
+    // Right element of root now becomes root
+    private Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        rotationsCount++;
+        return right;
+    }
+
+    @Override
+    public String insert(Integer value) throws RuntimeException {
+        if (!insertKey(value)) {
+            throw new RuntimeException(String.format("Value %d already exists in the tree!", value));
+        }
+        return "Rotations made in insertion: " + rotationsCount;
+    }
+
+    @Override
+    public boolean insertKey(int value) {
+        rotationsCount = 0;
+        changed = false;
+        root = insertRecursive(root, value);
+        if (changed) size++;
+        return changed;
+    }
+
+    private Node insertRecursive(Node node, int value) {
+        if (node == null) {
+            changed = true;
+            return new Node(value);
+        }
+
+        if (value < node.value) {
+            node.left = insertRecursive(node.left, value);
+            if (node.rank == node.left.rank) return fixInsertLeft(node);
+        } else if (value > node.value) {
+            node.right = insertRecursive(node.right, value);
+            if (node.rank == node.right.rank) return fixInsertRight(node);
+        }
+        return node;
+    }
+
+    // The left child has rank difference 0
+    private Node fixInsertLeft(Node node) {
+        if (node.rank - rank(node.right) == 1) {
+            // 0,1 node: promote and let the parent check again
+            node.rank++;
+            return node;
+        }
+        Node left = node.left;
+        if (left.rank - rank(left.left) == 1) {
+            node.rank--;
+            return rotateRight(node);
+        }
+        // The inner grandchild becomes the subtree root
+        Node inner = left.right;
+        inner.rank++;
+        left.rank--;
+        node.rank--;
+        node.left = rotateLeft(left);
+        return rotateRight(node);
+    }
+
+    // Mirror of fixInsertLeft
+    private Node fixInsertRight(Node node) {
+        if (node.rank - rank(node.left) == 1) {
+            node.rank++;
+            return node;
+        }
+        Node right = node.right;
+        if (right.rank - rank(right.right) == 1) {
+            node.rank--;
+            return rotateLeft(node);
+        }
+        Node inner = right.left;
+        inner.rank++;
+        right.rank--;
+        node.rank--;
+        node.right = rotateRight(right);
+        return rotateLeft(node);
+    }
+
+    @Override
+    public Node find(Integer value) {
+        Node node = root;
+        while (node != null && value != node.value) {
+            node = value < node.value ? node.left : node.right;
+        }
+        return node;
+    }
+
+    @Override
+    public boolean contains(int value) {
+        return find(value) != null;
+    }
+
+    @Override
+    public String remove(Integer value) throws RuntimeException {
+        if (!removeKey(value)) {
+            throw new RuntimeException(String.format("Value %d not found in the tree!", value));
+        }
+        return "Rotations made in removal: " + rotationsCount;
+    }
+
+    @Override
+    public boolean removeKey(int value) {
+        rotationsCount = 0;
+        changed = false;
+        root = deleteRecursive(root, value);
+        if (changed) size--;
+        return changed;
+    }
+
+    private Node deleteRecursive(Node node, int value) {
+        if (node == null) return null;
+
+        if (value < node.value) {
+            node.left = deleteRecursive(node.left, value);
+            return changed ? fixDeleteLeft(node) : node;
+        } else if (value > node.value) {
+            node.right = deleteRecursive(node.right, value);
+            return changed ? fixDeleteRight(node) : node;
+        }
+
+        changed = true;
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+
+        // In case of 2 children, take the smallest value in the RIGHT subtree
+        Node successor = node.right;
+        while (successor.left != null) successor = successor.left;
+        node.value = successor.value;
+        node.right = deleteRecursive(node.right, successor.value);
+        return fixDeleteRight(node);
+    }
+
+    // The left subtree lost a key: the node may be a 2,2 leaf or have a 3-child
+    private Node fixDeleteLeft(Node node) {
+        if (node.left == null && node.right == null) {
+            node.rank = 0;
+            return node;
+        }
+        if (node.rank - rank(node.left) < 3) return node;
+
+        Node right = node.right;
+        if (node.rank - right.rank == 2) {
+            node.rank--;
+            return node;
+        }
+        if (right.rank - rank(right.left) == 2 && right.rank - rank(right.right) == 2) {
+            node.rank--;
+            right.rank--;
+            return node;
+        }
+        if (right.rank - rank(right.right) == 1) {
+            right.rank++;
+            node.rank--;
+            Node result = rotateLeft(node);
+            if (node.left == null && node.right == null) node.rank = 0;
+            return result;
+        }
+        // The inner grandchild becomes the subtree root
+        Node inner = right.left;
+        inner.rank += 2;
+        right.rank--;
+        node.rank -= 2;
+        node.right = rotateRight(right);
+        return rotateLeft(node);
+    }
+
+    // Mirror of fixDeleteLeft
+    private Node fixDeleteRight(Node node) {
+        if (node.left == null && node.right == null) {
+            node.rank = 0;
+            return node;
+        }
+        if (node.rank - rank(node.right) < 3) return node;
+
+        Node left = node.left;
+        if (node.rank - left.rank == 2) {
+            node.rank--;
+            return node;
+        }
+        if (left.rank - rank(left.left) == 2 && left.rank - rank(left.right) == 2) {
+            node.rank--;
+            left.rank--;
+            return node;
+        }
+        if (left.rank - rank(left.left) == 1) {
+            left.rank++;
+            node.rank--;
+            Node result = rotateRight(node);
+            if (node.left == null && node.right == null) node.rank = 0;
+            return result;
+        }
+        Node inner = left.right;
+        inner.rank += 2;
+        left.rank--;
+        node.rank -= 2;
+        node.left = rotateLeft(left);
+        return rotateRight(node);
+    }
+
+    public static final class Node implements TreeNode {
+        private int value;
+        private int rank;
+        private Node left;
+        private Node right;
+
+        private Node(int value) {
+            this.value = value;
+            this.rank = 0;
+        }
+
+        @Override
+        public int getValue() {
+            return value;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        @Override
+        public Node getLeft() {
+            return left;
+        }
+
+        @Override
+        public Node getRight() {
+            return right;
+        }
+
+        @Override
+        public String toString() {
+            return "Node of value " + value + " at rank " + rank;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.equiperocket.projects.avltree;
+
+import java.util.SplittableRandom;
+
+// Draws ranks in [0, items) with Zipfian popularity, exponent 0.99 as in YCSB
+// (Gray et al., "Quickly Generating Billion-Record Synthetic Databases"): rank
+// 0 is the hottest and the draws repeat. The zeta sum is computed once in
+// O(items); every draw after that is O(1).
+public final class ZipfianGenerator {
+
+    public static final double THETA = 0.99;
+
+    private final long items;
+    private final double zetaN;
+    private final double zeta2;
+    private final double alpha;
+    private final double eta;
+
+    public ZipfianGenerator(long items) {
+        if (items < 1) {
+            throw new IllegalArgumentException(String.format("Zipfian generator needs at least 1 item, got %d!", items));
+        }
+        this.items = items;
+        double zeta = 0;
+        for (long i = 1; i <= items; i++) zeta += 1 / Math.pow(i, THETA);
+        zetaN = zeta;
+        zeta2 = 1 + 1 / Math.pow(2, THETA);
+        alpha = 1 / (1 - THETA);
+        eta = (1 - Math.pow(2.0 / items, 1 - THETA)) / (1 - zeta2 / zetaN);
+    }
+
+    public long items() {
+        return items;
+    }
+
+    public long nextRank(SplittableRandom random) {
+        double uz = random.nextDouble() * zetaN;
+        if (uz < 1) return 0;
+        if (uz < zeta2) return Math.min(1, items - 1);
+        double u = uz / zetaN;
+        return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+}